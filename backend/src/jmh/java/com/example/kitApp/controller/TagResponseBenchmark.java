@@ -0,0 +1,62 @@
+package com.example.kitApp.controller;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.kitApp.model.TagOutcome;
+import com.example.kitApp.service.BenchmarkData;
+import com.example.kitApp.service.TagResults;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the tagSubscribers response from the outcomes, and writing it as JSON the way
+ * Spring MVC would, for uploads of 1k and 100k emails, with every detail or only the failures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TagResponseBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int emails;
+
+    @Param({ "ALL", "FAILURES" })
+    public TagResults.Details details;
+
+    private TagResults outcomes;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        outcomes = new TagResults(false, emails);
+        for (int i = 0; i < emails; i++) {
+            String email = BenchmarkData.email(i);
+            // mostly newly tagged, some already tagged, a few failures
+            if (i % 50 == 0) {
+                outcomes.add(TagOutcome.failed(email, "404 Not Found: subscriber not found"), i);
+            } else if (i % 5 == 0) {
+                outcomes.add(new TagOutcome(email, TagOutcome.Result.ALREADY_TAGGED, 200, "{\"subscriber\":{\"id\":" + i + "}}"), i);
+            } else {
+                outcomes.add(new TagOutcome(email, TagOutcome.Result.TAGGED, 201, "{\"subscriber\":{\"id\":" + i + "}}"), i);
+            }
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<?> buildResponse() {
+        return KitApiController.buildTagResponse(outcomes, details, new HashMap<>());
+    }
+
+    @Benchmark
+    public void buildAndSerializeResponse() throws IOException {
+        ResponseEntity<?> response = KitApiController.buildTagResponse(outcomes, details, new HashMap<>());
+        objectMapper.writeValue(OutputStream.nullOutputStream(), response.getBody());
+    }
+}
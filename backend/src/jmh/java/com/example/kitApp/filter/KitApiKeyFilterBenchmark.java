@@ -0,0 +1,50 @@
+package com.example.kitApp.filter;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.kitApp.context.KitApiKeyContext;
+
+import jakarta.servlet.FilterChain;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of KitApiKeyFilter: reading the header, setting and clearing the thread-local key.
+ * The direct chain call is the baseline. Logging is configured at WARN for the benchmarks
+ * (see logback.xml), so the filter's INFO line only costs its level check here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KitApiKeyFilterBenchmark {
+
+    private KitApiKeyFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private Blackhole blackhole;
+    private FilterChain chain;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        filter = new KitApiKeyFilter();
+        request = new MockHttpServletRequest("POST", "/api/subscribers");
+        request.addHeader("Kit-Api-Key", "kit_0123456789abcdef0123456789abcdef");
+        response = new MockHttpServletResponse();
+        // stands in for the controller, which reads the key
+        chain = (req, res) -> this.blackhole.consume(KitApiKeyContext.getApiKey());
+    }
+
+    @Benchmark
+    public void baselineChainOnly() throws Exception {
+        chain.doFilter(request, response);
+    }
+
+    @Benchmark
+    public void throughFilter() throws Exception {
+        filter.doFilter(request, response, chain);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.kitApp.service;
+
+/**
+ * Synthetic Kit payloads shared by the benchmarks, shaped like real v4 responses
+ * (custom fields and pagination included) so the parsers skip as much as they would in production.
+ */
+public final class BenchmarkData {
+
+    private BenchmarkData() {}
+
+    public static String email(int index) {
+        return "subscriber" + index + "@example.com";
+    }
+
+    public static String subscriberPageJson(int pageSize, int firstIndex, String endCursor) {
+        StringBuilder json = new StringBuilder(pageSize * 260);
+        json.append("{\"subscribers\":[");
+        for (int i = 0; i < pageSize; i++) {
+            int index = firstIndex + i;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(100000 + index)
+                .append(",\"first_name\":\"Subscriber ").append(index).append('"')
+                .append(",\"email_address\":\"").append(email(index)).append('"')
+                .append(",\"state\":\"active\"")
+                .append(",\"created_at\":\"2024-01-01T00:00:00Z\"")
+                .append(",\"fields\":{\"company\":null,\"last_name\":\"Example\",\"source\":\"import\"}}");
+        }
+        json.append("],\"pagination\":{\"has_previous_page\":false,\"has_next_page\":true,")
+            .append("\"start_cursor\":\"cursor-start\",\"end_cursor\":\"").append(endCursor)
+            .append("\",\"per_page\":").append(pageSize).append("}}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.kitApp.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.example.kitApp.model.SubscriberPage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The aggregation loop behind getSubscribers: walking every page through SubscriberPager into an
+ * email to ID map, the way SubscriberSnapshotCache loads a snapshot, then copying out the email list.
+ * Pages come from memory, so this measures the pager and the collections rather than Kit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SubscriberAggregationBenchmark {
+
+    @Param({ "10", "100" })
+    public int pages;
+
+    @Param({ "1000" })
+    public int pageSize;
+
+    private SubscriberPager pager;
+    private SubscriberPage firstPage;
+    private final Map<String, SubscriberPage> pagesByCursor = new HashMap<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        pager = new SubscriberPager(0, 1, 1);
+        for (int i = 0; i <= pages; i++) {
+            // the page after the last one is empty, which is how Kit ends the walk
+            int size = i < pages ? pageSize : 0;
+            String json = BenchmarkData.subscriberPageJson(size, i * pageSize, "cursor" + (i + 1));
+            SubscriberPage page = SubscriberPageParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+            if (i == 0) {
+                firstPage = page;
+            } else {
+                pagesByCursor.put("cursor" + i, page);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pager.shutdown();
+    }
+
+    @Benchmark
+    public List<String> aggregateAllPages() throws IOException {
+        LinkedHashMap<String, Long> subscribers = new LinkedHashMap<>();
+        firstPage.forEach((id, email, active) -> subscribers.put(email, id));
+        pager.forEachFollowingPage(firstPage, pagesByCursor::get,
+            page -> page.forEach((id, email, active) -> subscribers.put(email, id)));
+        return new ArrayList<>(subscribers.keySet());
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.kitApp.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.kitApp.model.KitApiSubscribersResponse;
+import com.example.kitApp.model.SubscriberPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing one Kit subscriber page: binding to KitApiSubscribersResponse and extracting the emails,
+ * against the token-streaming SubscriberPageParser used by KitApiService.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubscriberPageBenchmark {
+
+    // Kit's default page size is 500 and its maximum 1000
+    @Param({ "50", "500", "1000" })
+    public int pageSize;
+
+    private byte[] json;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        // configured like the ObjectMapper RestTemplate uses
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        json = BenchmarkData.subscriberPageJson(pageSize, 0, "cursor-next").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<String> databindAndExtractEmails() throws IOException {
+        KitApiSubscribersResponse response = objectMapper.readValue(json, KitApiSubscribersResponse.class);
+        return response.getSubscriberEmailAddresses();
+    }
+
+    @Benchmark
+    public SubscriberPage streamingParser() throws IOException {
+        return SubscriberPageParser.parse(new ByteArrayInputStream(json));
+    }
+}
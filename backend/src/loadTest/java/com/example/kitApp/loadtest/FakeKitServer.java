@@ -0,0 +1,263 @@
+package com.example.kitApp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the parts of Kit's v4 API the backend uses, served by the JDK's HttpServer
+ * so it runs offline with no extra dependencies.
+ *
+ * The account holds subscriberCount subscribers named subscriber{N}@example.com (IDs from 100000), listed with
+ * cursor pagination, and tagCount tags. Tagging by email answers 201 the first time, 200 after that and 404 for
+ * addresses not in the account; bulk tagging accepts everything. Every request waits for the configured latency
+ * and may be answered with an injected 500 or 429 (with Retry-After) instead.
+ */
+public class FakeKitServer implements AutoCloseable {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long FIRST_SUBSCRIBER_ID = 100000;
+
+    private final int subscriberCount;
+    private int tagCount = 20;
+    private Duration latency = Duration.ZERO;
+    private Duration latencyJitter = Duration.ZERO;
+    private double errorRate;
+    private double throttleRate;
+    private int retryAfterSeconds = 1;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    // "tagId email" for every tagging made
+    private final Set<String> taggings = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong injectedThrottles = new AtomicLong();
+
+    public FakeKitServer(int subscriberCount) {
+        this.subscriberCount = subscriberCount;
+    }
+
+    public FakeKitServer tagCount(int tagCount) { this.tagCount = tagCount; return this; }
+    public FakeKitServer latency(Duration latency, Duration jitter) { this.latency = latency; this.latencyJitter = jitter; return this; }
+    public FakeKitServer errorRate(double errorRate) { this.errorRate = errorRate; return this; }
+    public FakeKitServer throttleRate(double throttleRate, int retryAfterSeconds) {
+        this.throttleRate = throttleRate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    public static String email(int index) {
+        return "subscriber" + index + "@example.com";
+    }
+
+    /**
+     * Starts listening on a free local port.
+     */
+    public FakeKitServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        // handlers sleep to simulate latency, so each in-flight request needs its own thread
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-kit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v4/", this::handle);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Base URL to configure as kit.api.base-url.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v4";
+    }
+
+    public long getRequests() { return requests.get(); }
+    public long getInjectedErrors() { return injectedErrors.get(); }
+    public long getInjectedThrottles() { return injectedThrottles.get(); }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            simulateLatency();
+            if (exchange.getRequestHeaders().getFirst("X-Kit-Api-Key") == null) {
+                send(exchange, 401, "{\"errors\":[\"The access token is invalid\"]}");
+                return;
+            }
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < throttleRate) {
+                injectedThrottles.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                send(exchange, 429, "{\"errors\":[\"Too many requests\"]}");
+                return;
+            }
+            if (roll < throttleRate + errorRate) {
+                injectedErrors.incrementAndGet();
+                send(exchange, 500, "{\"errors\":[\"Internal server error\"]}");
+                return;
+            }
+
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            if ("GET".equals(method) && "/v4/subscribers".equals(path)) {
+                listSubscribers(exchange);
+            } else if ("GET".equals(method) && "/v4/tags".equals(path)) {
+                listTags(exchange);
+            } else if ("POST".equals(method) && path.matches("/v4/tags/[^/]+/subscribers")) {
+                tagSubscriber(exchange, path.split("/")[3]);
+            } else if ("POST".equals(method) && "/v4/bulk/tags/subscribers".equals(path)) {
+                bulkTag(exchange);
+            } else {
+                send(exchange, 404, "{\"errors\":[\"Not Found\"]}");
+            }
+        }
+    }
+
+    private void listSubscribers(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        int perPage = Math.min(Integer.parseInt(query.getOrDefault("per_page", "500")), 1000);
+        int offset = query.containsKey("after") ? Integer.parseInt(query.get("after").substring(1)) : 0;
+        // nothing in this account ever changes, so incremental refreshes find no updates
+        int end = query.containsKey("updated_after") ? offset : Math.min(offset + perPage, subscriberCount);
+
+        StringBuilder json = new StringBuilder((end - offset) * 200 + 200);
+        json.append("{\"subscribers\":[");
+        for (int i = offset; i < end; i++) {
+            if (i > offset) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(FIRST_SUBSCRIBER_ID + i)
+                .append(",\"first_name\":null,\"email_address\":\"").append(email(i))
+                .append("\",\"state\":\"active\",\"created_at\":\"2024-01-01T00:00:00Z\",\"fields\":{}}");
+        }
+        json.append("],\"pagination\":{\"has_previous_page\":").append(offset > 0)
+            .append(",\"has_next_page\":").append(end < subscriberCount && end > offset)
+            .append(",\"start_cursor\":\"o").append(offset)
+            .append("\",\"end_cursor\":\"o").append(end)
+            .append("\",\"per_page\":").append(perPage).append("}}");
+        send(exchange, 200, json.toString());
+    }
+
+    private void listTags(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("{\"tags\":[");
+        for (int i = 1; i <= tagCount; i++) {
+            if (i > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"name\":\"Tag ").append(i)
+                .append("\",\"created_at\":\"2024-01-01T00:00:00Z\"}");
+        }
+        json.append("],\"pagination\":{\"has_previous_page\":false,\"has_next_page\":false,")
+            .append("\"start_cursor\":null,\"end_cursor\":null,\"per_page\":500}}");
+        send(exchange, 200, json.toString());
+    }
+
+    private void tagSubscriber(HttpExchange exchange, String tagId) throws IOException {
+        JsonNode body = readBody(exchange);
+        String email = body.path("email_address").asText("");
+        int index = indexOf(email);
+        if (index < 0) {
+            send(exchange, 404, "{\"errors\":[\"Not Found\"]}");
+            return;
+        }
+        boolean added = taggings.add(tagId + " " + email);
+        send(exchange, added ? 201 : 200, "{\"subscriber\":{\"id\":" + (FIRST_SUBSCRIBER_ID + index)
+            + ",\"email_address\":\"" + email + "\",\"tagged_at\":\"2024-01-01T00:00:00Z\"}}");
+    }
+
+    private void bulkTag(HttpExchange exchange) throws IOException {
+        JsonNode body = readBody(exchange);
+        for (JsonNode tagging : body.path("taggings")) {
+            long id = tagging.path("subscriber_id").asLong();
+            taggings.add(tagging.path("tag_id").asText() + " " + email((int) (id - FIRST_SUBSCRIBER_ID)));
+        }
+        send(exchange, 200, "{\"taggings\":[],\"failures\":[]}");
+    }
+
+    // Index of an address in the account, or -1
+    private int indexOf(String email) {
+        if (!email.startsWith("subscriber") || !email.endsWith("@example.com")) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(email.substring("subscriber".length(), email.length() - "@example.com".length()));
+            return index >= 0 && index < subscriberCount ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void simulateLatency() {
+        long nanos = latency.toNanos();
+        if (!latencyJitter.isZero()) {
+            nanos += ThreadLocalRandom.current().nextLong(latencyJitter.toNanos() + 1);
+        }
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            return OBJECT_MAPPER.readTree(body);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
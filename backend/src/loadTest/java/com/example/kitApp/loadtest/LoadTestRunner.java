@@ -0,0 +1,149 @@
+package com.example.kitApp.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.kitApp.BackendApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * End-to-end load test: starts FakeKitServer and the backend in this JVM, with the backend's
+ * kit.api.base-url pointed at the fake, then drives /api/subscribers and /api/tag-subscribers
+ * and prints throughput, latency percentiles and response statuses for each.
+ *
+ * Run with `gradle loadTest`; settings are system properties, passed as -Ploadtest.<name>=value:
+ *   subscribers (20000), latencyMs (20), jitterMs (10), errorRate (0.005), throttleRate (0.001),
+ *   requests (50), concurrency (8), tagRequests (20), tagBatch (500)
+ * Every subscriber request uses its own API key, so each one is a cold load through the pager rather
+ * than a snapshot cache hit. Tag batches mix addresses in the account with some that are not (404s).
+ */
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        int subscribers = Integer.getInteger("loadtest.subscribers", 20000);
+        int latencyMs = Integer.getInteger("loadtest.latencyMs", 20);
+        int jitterMs = Integer.getInteger("loadtest.jitterMs", 10);
+        double errorRate = Double.parseDouble(System.getProperty("loadtest.errorRate", "0.005"));
+        double throttleRate = Double.parseDouble(System.getProperty("loadtest.throttleRate", "0.001"));
+        int requests = Integer.getInteger("loadtest.requests", 50);
+        int concurrency = Integer.getInteger("loadtest.concurrency", 8);
+        int tagRequests = Integer.getInteger("loadtest.tagRequests", 20);
+        int tagBatch = Integer.getInteger("loadtest.tagBatch", 500);
+
+        try (FakeKitServer kit = new FakeKitServer(subscribers)
+                .latency(Duration.ofMillis(latencyMs), Duration.ofMillis(jitterMs))
+                .errorRate(errorRate)
+                .throttleRate(throttleRate, 1)
+                .start();
+             // passed as command line arguments so they override application.properties
+             ConfigurableApplicationContext app = new SpringApplicationBuilder(BackendApplication.class).run(
+                    "--server.port=0",
+                    "--spring.main.banner-mode=off",
+                    // per-email errors (the 404s are expected) would drown out the report
+                    "--logging.level.com.example.kitApp=OFF",
+                    "--kit.api.base-url=" + kit.getBaseUrl(),
+                    // the JDK HttpServer behind the fake only speaks HTTP/1.1
+                    "--kit.http.version=HTTP_1_1",
+                    // the fake has no rate limit of its own beyond the injected 429s
+                    "--kit.rate-limit.requests-per-minute=6000000",
+                    "--kit.rate-limit.burst=10000",
+                    "--kit.retry.initial-backoff=50ms")) {
+
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            String backend = "http://127.0.0.1:" + port;
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+            System.out.printf("Fake Kit at %s: %d subscribers, %d+%d ms latency, %.2f%% errors, %.2f%% 429s%n",
+                kit.getBaseUrl(), subscribers, latencyMs, jitterMs, errorRate * 100, throttleRate * 100);
+
+            run("POST /api/subscribers", requests, concurrency, client, i -> HttpRequest.newBuilder()
+                .uri(URI.create(backend + "/api/subscribers"))
+                .header("Kit-Api-Key", "load-test-key-" + i)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build());
+
+            run("POST /api/tag-subscribers", tagRequests, concurrency, client, i -> HttpRequest.newBuilder()
+                .uri(URI.create(backend + "/api/tag-subscribers"))
+                .header("Kit-Api-Key", "load-test-key")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(tagRequestJson(i, tagBatch, subscribers)))
+                .build());
+
+            System.out.printf("Fake Kit served %d requests (%d injected 500s, %d injected 429s)%n",
+                kit.getRequests(), kit.getInjectedErrors(), kit.getInjectedThrottles());
+        }
+        System.exit(0);
+    }
+
+    private static void run(String name, int requests, int concurrency, HttpClient client,
+            IntFunction<HttpRequest> request) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long[] latencies = new long[requests];
+        Map<Integer, Integer> statuses = new TreeMap<>();
+        List<Future<?>> futures = new ArrayList<>(requests);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            final int n = i;
+            futures.add(pool.submit(() -> {
+                long sent = System.nanoTime();
+                int status;
+                try {
+                    status = client.send(request.apply(n), HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (Exception e) {
+                    status = -1;
+                }
+                latencies[n] = System.nanoTime() - sent;
+                synchronized (statuses) {
+                    statuses.merge(status, 1, Integer::sum);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("%s: %d requests, concurrency %d, %.1f req/s%n", name, requests, concurrency, requests / seconds);
+        System.out.printf("  latency ms  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n",
+            percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99), latencies[requests - 1] / 1e6);
+        System.out.printf("  statuses %s (-1 = no response)%n", statuses);
+    }
+
+    // Nearest-rank percentile, in milliseconds
+    private static double percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+
+    // One in ten addresses is not in the fake account, so it comes back as a 404 failure
+    private static String tagRequestJson(int request, int batch, int subscribers) {
+        StringBuilder json = new StringBuilder("{\"tagId\":\"").append(request % 5 + 1).append("\",\"emails\":[");
+        for (int i = 0; i < batch; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            int index = (request * batch + i) % subscribers;
+            String email = i % 10 == 9 ? "unknown" + index + "@example.org" : FakeKitServer.email(index);
+            json.append('"').append(email).append('"');
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.kitApp.config;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+@Configuration
+public class KitHttpClientConfig {
+    private static final Logger logger = LoggerFactory.getLogger(KitHttpClientConfig.class);
+
+    /**
+     * The transport KitApiService uses to reach Kit, selected by kit.http.transport:
+     * "jdk" (default) is the JDK HttpClient, which keeps connections alive in a pool and multiplexes
+     * requests over HTTP/2; "simple" is the old HttpURLConnection based factory.
+     * Both fail fast on the configured connect and read timeouts instead of hanging on a slow upstream.
+     *
+     * The JDK client only exposes its pool size and keep-alive as JVM-wide system properties, read when
+     * the first client is created, so they are set here unless already given on the command line.
+     */
+    @Bean
+    public ClientHttpRequestFactory kitClientHttpRequestFactory(
+            @Value("${kit.http.transport:jdk}") String transport,
+            @Value("${kit.http.version:HTTP_2}") HttpClient.Version version,
+            @Value("${kit.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${kit.http.read-timeout:30s}") Duration readTimeout,
+            @Value("${kit.http.keep-alive:60s}") Duration keepAlive,
+            @Value("${kit.http.max-pool-size:0}") int maxPoolSize) {
+
+        if ("simple".equalsIgnoreCase(transport)) {
+            SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+            factory.setConnectTimeout(connectTimeout);
+            factory.setReadTimeout(readTimeout);
+            return factory;
+        }
+        if (!"jdk".equalsIgnoreCase(transport)) {
+            throw new IllegalArgumentException("Unknown kit.http.transport: " + transport);
+        }
+
+        setDefaultProperty("jdk.httpclient.keepalive.timeout", String.valueOf(keepAlive.toSeconds()));
+        if (maxPoolSize > 0) {
+            setDefaultProperty("jdk.httpclient.connectionPoolSize", String.valueOf(maxPoolSize));
+        }
+
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(version)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(readTimeout);
+        logger.info("Kit API transport: JDK HttpClient ({}), connect timeout {}, read timeout {}",
+            version, connectTimeout, readTimeout);
+        return factory;
+    }
+
+    private static void setDefaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+}
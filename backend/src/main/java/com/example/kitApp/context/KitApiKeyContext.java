@@ -1,8 +1,14 @@
 package com.example.kitApp.context;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.Callable;
+
 public class KitApiKeyContext {
 
-    // ThreadLocal ensures that each thread (i.e., each request) 
+    // ThreadLocal ensures that each thread (i.e., each request)
     // gets its own isolated copy of the apiKey.
     private static final ThreadLocal<String> apiKeyHolder = new ThreadLocal<>();
 
@@ -20,4 +26,51 @@ public class KitApiKeyContext {
     public static void clear() {
         apiKeyHolder.remove();
     }
+
+    // Wrap a task so it runs with the given API key on whatever thread executes it.
+    // Worker threads never pass through KitApiKeyFilter, so the key has to be carried over explicitly.
+    public static <T> Callable<T> wrap(String apiKey, Callable<T> task) {
+        return () -> {
+            String previous = apiKeyHolder.get();
+            apiKeyHolder.set(apiKey);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    // Runnable variant of wrap(String, Callable)
+    public static Runnable wrap(String apiKey, Runnable task) {
+        return () -> {
+            String previous = apiKeyHolder.get();
+            apiKeyHolder.set(apiKey);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    // Short, stable fingerprint of an API key, used to key per-account state
+    // (limits, caches) without keeping the raw key around or writing it to logs.
+    public static String fingerprint(String apiKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void restore(String previous) {
+        if (previous == null) {
+            apiKeyHolder.remove();
+        } else {
+            apiKeyHolder.set(previous);
+        }
+    }
 }
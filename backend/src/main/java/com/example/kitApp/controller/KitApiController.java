@@ -2,17 +2,45 @@ package com.example.kitApp.controller;
 
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.example.kitApp.model.KitApiSubscribersResponse;
-import com.example.kitApp.model.KitApiTagsResponse;
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.filter.KitApiKeyFilter;
+import com.example.kitApp.model.SubscriberPage;
+import com.example.kitApp.model.TagBatchRequest;
+import com.example.kitApp.model.TagOutcome;
 import com.example.kitApp.model.TagSubscribersRequest;
+import com.example.kitApp.service.CsvEmailReader;
+import com.example.kitApp.service.EmailArena;
 import com.example.kitApp.service.KitApiService;
+import com.example.kitApp.service.KitRequestExecutor;
+import com.example.kitApp.service.KitTaggingService;
+import com.example.kitApp.service.SubscriberDiff;
+import com.example.kitApp.service.SubscriberExportWriter;
+import com.example.kitApp.service.SubscriberPager;
+import com.example.kitApp.service.SubscriberSnapshotCache;
+import com.example.kitApp.service.TagCache;
+import com.example.kitApp.service.TagResults;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * KitApiController handles API requests related to Kit subscribers and tags.
@@ -21,168 +49,523 @@ import java.util.stream.Collectors;
 @RequestMapping("/api")
 public class KitApiController {
     private static final Logger logger = LoggerFactory.getLogger(KitApiController.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
     
     private final KitApiService kitApiService;
+    private final KitTaggingService kitTaggingService;
+    private final SubscriberPager subscriberPager;
+    private final SubscriberSnapshotCache subscriberSnapshotCache;
+    private final TagCache tagCache;
+    private final KitRequestExecutor requestExecutor;
 
-    public KitApiController(KitApiService kitApiService) {
+    public KitApiController(KitApiService kitApiService, KitTaggingService kitTaggingService,
+            SubscriberPager subscriberPager, SubscriberSnapshotCache subscriberSnapshotCache, TagCache tagCache,
+            KitRequestExecutor requestExecutor) {
         this.kitApiService = kitApiService;
+        this.kitTaggingService = kitTaggingService;
+        this.subscriberPager = subscriberPager;
+        this.subscriberSnapshotCache = subscriberSnapshotCache;
+        this.tagCache = tagCache;
+        this.requestExecutor = requestExecutor;
+    }
+
+    /**
+     * Runs an endpoint's work on KitRequestExecutor so the servlet thread is released while Kit is being called.
+     * Answers 503 when the executor is saturated, and 400 for anything the work itself did not handle.
+     */
+    private CompletableFuture<ResponseEntity<?>> async(Supplier<ResponseEntity<?>> work) {
+        return requestExecutor.supply(work).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException) {
+                logger.warn("Async request executor is saturated, refusing request");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many requests in progress, try again later.");
+            }
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + cause.getMessage());
+        });
     }
 
     /**
      * Gets all the subscribers. Will make multiple calls to the Kit API
-     * if there are more than 500 subscribers, using pagination with end cursors.
+     * if there is more than one page of subscribers, using pagination with end cursors (see SubscriberPager).
+     * The list is served from SubscriberSnapshotCache, so repeat loads for the same account
+     * only ask Kit for subscribers that changed since the last load.
+     * The response carries an ETag from the snapshot's content hash; a client that sends it back in
+     * If-None-Match gets a 304 with no body while the list is unchanged.
      */
     @PostMapping("/subscribers")
-    public ResponseEntity<?> getSubscribers() {
-        logger.info("Fetching subscribers from Kit API");
+    public CompletableFuture<ResponseEntity<?>> getSubscribers(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return async(() -> {
+            logger.info("Fetching subscribers from Kit API");
         
-        try {
-            KitApiSubscribersResponse kitResponse = kitApiService.fetchSubscribers(null);
-            logger.info("Response: {}", kitResponse);
-            if (kitResponse == null) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No response from Kit API.");
-            }
-            List<String> emails = kitResponse.getSubscriberEmailAddresses();
+            try {
+                SubscriberSnapshotCache.SubscriberList subscribers = subscriberSnapshotCache.getSubscriberList();
+                if (subscribers == null) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No response from Kit API.");
+                }
 
-            if (emails.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No subscribers found.");
-            }
-            logger.info("Successfully retrieved subscribers from Kit API");
-
-            // Extract emails and end cursor
-            String endCursor = kitResponse.getEndCursor();
-            
-            // if an end cursor is present, continue fetching more subscribers (at current implementation,
-            // end_cursor is always present, even if it hit the final subscriber, but check null/empty to be safe)
-            int safetyCount = 8; // Safety count to prevent infinite loops TODO
-            while (endCursor != null && !endCursor.isEmpty() && safetyCount > 0) {
-                safetyCount--;
-                logger.info("End cursor found: {}", endCursor);
-                Map<String, Object> result = new HashMap<>();
-                result = getNextPageSubscribers(endCursor);
-                if (result == null || !result.containsKey("emails") || !result.containsKey("endCursor")) {
-                    logger.warn("No more subscribers found or invalid response structure.");
-                    break;
+                List<String> emails = subscribers.getEmails();
+                if (emails.isEmpty()) {
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No subscribers found.");
                 }
-                
-                logger.info("Safety {} Result {}", safetyCount, result);
-                emails.addAll((List<String>) result.get("emails"));
-                endCursor = (String) result.get("endCursor");
-            }
-            if (safetyCount == 0) {
-                logger.warn("Safety count reached zero, stopping pagination to prevent infinite loop.");
+                logger.info("Total subscribers fetched: {}", emails.size());
+                return conditional(ifNoneMatch, subscribers.getContentHash(), emails);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
             }
-            logger.info("Total subscribers fetched: {}", emails.size());
-            return ResponseEntity.ok(emails);
+        });
+    }
+
+    /**
+     * Streaming variant of getSubscribers. Writes the subscribers as NDJSON, one JSON string per line,
+     * flushing each page to the client as soon as Kit returns it instead of aggregating every page first.
+     * The first page is fetched before the response starts, so a missing or failing first page still
+     * produces the same error statuses as getSubscribers. A failure on a later page aborts the stream.
+     * The return type has to name StreamingResponseBody for Spring to write the body asynchronously,
+     * so the first-page errors are thrown as ResponseStatusException (see handleResponseStatus).
+     */
+    @PostMapping(value = "/subscribers/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSubscribers() {
+        logger.info("Streaming subscribers from Kit API");
+
+        SubscriberPage firstPage;
+        try {
+            firstPage = kitApiService.fetchSubscribers(null);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Error: " + e.getMessage(), e);
+        }
+        if (firstPage == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No response from Kit API.");
+        }
+        if (firstPage.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No subscribers found.");
+        }
+
+        // The body is written on an async thread, which never passed through KitApiKeyFilter
+        String apiKey = KitApiKeyContext.getApiKey();
+        StreamingResponseBody body = outputStream -> {
+            KitApiKeyContext.setApiKey(apiKey);
+            try {
+                writeSubscriberPages(firstPage, outputStream);
+            } finally {
+                KitApiKeyContext.clear();
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(body);
+    }
+
+    /**
+     * Answers a ResponseStatusException from the streaming endpoints with its reason as a plain-text body,
+     * the same way the other endpoints report errors.
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> handleResponseStatus(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode())
+            .contentType(MediaType.TEXT_PLAIN)
+            .body(e.getReason());
+    }
+
+    /**
+     * Writes the first page and every following page to the output stream, one flush per page.
+     */
+    private void writeSubscriberPages(SubscriberPage firstPage, OutputStream outputStream) throws IOException {
+        JsonGenerator json = JSON_FACTORY.createGenerator(outputStream);
+        json.setRootValueSeparator(null);
+
+        int[] total = { writeEmails(json, firstPage) };
+        subscriberPager.forEachFollowingPage(firstPage, kitApiService::fetchSubscribers,
+            page -> total[0] += writeEmails(json, page));
+        json.close();
+        logger.info("Total subscribers streamed: {}", total[0]);
+    }
+
+    private int writeEmails(JsonGenerator json, SubscriberPage page) throws IOException {
+        for (int i = 0; i < page.size(); i++) {
+            json.writeString(page.getEmail(i));
+            json.writeRaw('\n');
         }
+        json.flush();
+        return page.size();
     }
 
     /**
-     * Uses the end cursor to fetch the next page of subscribers.
-     * This method is called recursively until there are no more pages to fetch or safety limit is reached.
-     * 
-     * returns a map containing the list of emails and the new end cursor, or null if no more subscribers are found.
+     * Exports every subscriber as a gzip-compressed CSV or NDJSON download. Like streamSubscribers, it walks
+     * Kit's cursor chain one page at a time and flushes each page as it arrives, so memory stays flat whatever
+     * the size of the account. columns is a comma-separated list from email, id, state and created_at;
+     * state and created_at are only asked of Kit when they are selected.
+     * Only active subscribers are exported, as Kit lists them by default, unless the state column is selected:
+     * then subscribers in every state are, so the column tells them apart.
+     * Errors before the download starts are thrown as ResponseStatusException, as in streamSubscribers.
      */
-    private Map<String, Object> getNextPageSubscribers(String endCursor) {
-        logger.info("Fetching next page of subscribers with end cursor: {}", endCursor);
+    @PostMapping("/subscribers/export")
+    public ResponseEntity<StreamingResponseBody> exportSubscribers(@RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "email") String columns) {
+        SubscriberExportWriter.Format exportFormat;
+        List<SubscriberExportWriter.Column> exportColumns;
+        try {
+            exportFormat = SubscriberExportWriter.Format.parse(format);
+            exportColumns = SubscriberExportWriter.Column.parseList(columns);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Error: " + e.getMessage(), e);
+        }
+        logger.info("Exporting subscribers from Kit API as {} with columns {}", exportFormat, exportColumns);
 
-        KitApiSubscribersResponse kitResponse = kitApiService.fetchSubscribers(endCursor);
-        if (kitResponse == null || kitResponse.getSubscribers() == null || kitResponse.getSubscribers().isEmpty()) {
-            return null;
+        boolean details = exportColumns.stream().anyMatch(SubscriberExportWriter.Column::needsDetails);
+        boolean allStates = exportColumns.contains(SubscriberExportWriter.Column.STATE);
+        Function<String, SubscriberPage> fetchPage = details
+            ? cursor -> kitApiService.fetchSubscriberDetails(cursor, allStates)
+            : kitApiService::fetchSubscribers;
+        SubscriberPage firstPage;
+        try {
+            firstPage = fetchPage.apply(null);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Error: " + e.getMessage(), e);
+        }
+        if (firstPage == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No response from Kit API.");
+        }
+        if (firstPage.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No subscribers found.");
         }
-        logger.info("Successfully retrieved subscribers from Kit API");
 
-        // Extract emails and end cursor
-        List<String> emails = kitResponse.getSubscribers().stream()
-        .map(sub -> sub.getEmailAddress())
-        .collect(Collectors.toList());
-        String newEndCursor = kitResponse.getPagination().getEndCursor();
+        // The body is written on an async thread, which never passed through KitApiKeyFilter
+        String apiKey = KitApiKeyContext.getApiKey();
+        StreamingResponseBody body = outputStream -> {
+            KitApiKeyContext.setApiKey(apiKey);
+            try (SubscriberExportWriter export = new SubscriberExportWriter(outputStream, exportFormat, exportColumns)) {
+                export.writePage(firstPage);
+                subscriberPager.forEachFollowingPage(firstPage, fetchPage, export::writePage);
+                logger.info("Total subscribers exported: {}", export.getTotal());
+            } finally {
+                KitApiKeyContext.clear();
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/gzip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(exportFormat.getFileName()).build().toString())
+            .body(body);
+    }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("emails", emails);
-        result.put("endCursor", newEndCursor);
-        
-        return result;
+    /**
+     * Diffs a JSON array of emails against the account's subscriber list (from SubscriberSnapshotCache) and
+     * returns them in three buckets: known subscribers, unknown addresses (tagging them would only get a 404
+     * from Kit) and duplicates of an earlier entry. Emails are compared and returned trimmed and lower-cased.
+     * Only active subscribers count as known.
+     */
+    @PostMapping(value = "/subscribers/diff", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> diffSubscribers(@RequestBody List<String> emails) {
+        return async(() -> {
+            logger.info("Diffing {} emails against the subscriber list", emails.size());
+            try {
+                Set<String> subscribers = subscriberSnapshotCache.getSubscriberEmailSet(KitApiKeyContext.getApiKey());
+                if (subscribers == null) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No response from Kit API.");
+                }
+                SubscriberDiff diff = SubscriberDiff.of(emails, subscribers);
+
+                Map<String, Integer> counts = new HashMap<>();
+                counts.put("known", diff.getKnown().size());
+                counts.put("unknown", diff.getUnknown().size());
+                counts.put("duplicates", diff.getDuplicates().size());
+                Map<String, Object> response = new HashMap<>();
+                response.put("known", diff.getKnown());
+                response.put("unknown", diff.getUnknown());
+                response.put("duplicates", diff.getDuplicates());
+                response.put("counts", counts);
+                return ResponseEntity.ok(response);
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+            }
+        });
     }
 
     /**
      * Fetches all available tags for the account linked to the Kit API key.
+     * Tags are served from TagCache, which revalidates them with Kit in the background once they go stale.
+     * Like getSubscribers, answers 304 when If-None-Match holds the ETag of the current tag list.
      */
     @GetMapping("/tags")
-    public ResponseEntity<?> getTags() {
+    public ResponseEntity<?> getTags(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         logger.info("Fetching available tags");
         try {
-            KitApiTagsResponse response = kitApiService.fetchTags();
-            return ResponseEntity.ok(response.getTags());
+            TagCache.TagList tags = tagCache.getTags();
+            return conditional(ifNoneMatch, tags.getContentHash(), tags.getTags());
         } catch (Exception e) {
             logger.error("Error fetching tags: ", e);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
         }
     }
 
+    /**
+     * Returns the body with a weak ETag built from the content hash, or a bodiless 304 when the client's
+     * If-None-Match already holds that ETag. The ETag is weak so Tomcat still gzips the response
+     * (it leaves responses with strong ETags uncompressed). The data depends on the API key, so caches
+     * must key on it and revalidate every time.
+     */
+    static ResponseEntity<?> conditional(String ifNoneMatch, String contentHash, Object body) {
+        String etag = "W/\"" + contentHash + "\"";
+        HttpStatus status = etagMatches(ifNoneMatch, etag) ? HttpStatus.NOT_MODIFIED : HttpStatus.OK;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .varyBy(KitApiKeyFilter.API_KEY_HEADER);
+        return status == HttpStatus.NOT_MODIFIED ? response.build() : response.body(body);
+    }
+
+    // If-None-Match uses the weak comparison: W/ prefixes are ignored, and * matches anything
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaqueTag = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || (value.startsWith("W/") ? value.substring(2) : value).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Tags subscribers with a specific tag ID.
      * Accepts a list of email addresses and a tag ID, and attempts to tag each subscriber.
-     * Makes a separate API call for each email address cause Kit's bulk tagging requires subscriber IDs,
-     * which are not provided in the initial subscriber fetch.
+     * Kit's bulk tagging requires subscriber IDs, so by default a separate API call is made for each email address.
+     * With kit.tagging.bulk.enabled, emails found in the cached subscriber list are resolved to IDs and tagged
+     * in batches instead. Either way the calls are run concurrently by KitTaggingService, bounded per API key.
+     * details (all, failures or none) picks which per-email entries are returned; Kit's response bodies
+     * are only included when the request sets includeBodies.
      */
     @PostMapping("/tag-subscribers")
-    public ResponseEntity<?> tagSubscribers(@RequestBody TagSubscribersRequest request) {
+    public CompletableFuture<ResponseEntity<?>> tagSubscribers(@RequestBody TagSubscribersRequest request,
+            @RequestParam(defaultValue = "all") String details) {
+        return async(() -> {
+            TagResults.Details level;
+            try {
+                level = TagResults.Details.parse(details);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+            }
 
-        logger.info("Tagging {} emails with tag: {}", 
-            request.getEmails().size(), request.getTagId());
+            logger.info("Tagging {} emails with tag: {}", 
+                request.getEmails().size(), request.getTagId());
 
-        // Initialize results map to track success, already tagged, and failed counts
-        Map<String, Integer> results = new HashMap<>();
-        results.put("success", 0);
-        results.put("alreadyTagged", 0);
-        results.put("failed", 0);
-
-        // Initialize a list to hold details of each email processed. Each detail will include the email address,
-        // http status, and result, which is either the response body on success, or error message.
-        List<Map<String, Object>> emailDetails = new ArrayList<>();
-
-        // Iterate over each email and attempt to tag it, calling the Kit API for each
-        for (String email : request.getEmails()) {
-            Map<String, Object> detail = new HashMap<>();
-            detail.put("email", email);
-            
+            // Tag every email, then tally the outcomes in the original input order
+            TagResults results = new TagResults(request.isIncludeBodies(), request.getEmails().size());
+            kitTaggingService.tagAll(KitApiKeyContext.getApiKey(), request.getTagId(), request.getEmails(), results::add);
+            return buildTagResponse(results, level, new HashMap<>());
+        });
+    }
+
+    /**
+     * Adds every tag in tagIds to, and removes every tag in untagIds from, the same list of emails in one pass.
+     * The emails are normalised and deduplicated once, and the subscriber lookups are shared by every tag
+     * (see KitTaggingService.applyAll), so the work is one set of (email, tag) pairs instead of one upload per tag.
+     * The response lists each operation with the same counts and details as /tag-subscribers, plus how many
+     * emails were received, kept, and dropped as blank or duplicate.
+     */
+    @PostMapping("/tag-subscribers/batch")
+    public CompletableFuture<ResponseEntity<?>> tagSubscribersBatch(@RequestBody TagBatchRequest request,
+            @RequestParam(defaultValue = "all") String details) {
+        return async(() -> {
+            TagResults.Details level;
+            List<KitTaggingService.Operation> operations = new ArrayList<>();
             try {
-                ResponseEntity<String> response = kitApiService.tagSubscriber(request.getTagId(), email);
-                detail.put("status", response.getStatusCode().value());
-                detail.put("result", response.getBody());
-                
-                if (response.getStatusCode() == HttpStatus.CREATED) {
-                    results.put("success", results.get("success") + 1);
-                } else if (response.getStatusCode() == HttpStatus.OK) {
-                    results.put("alreadyTagged", results.get("alreadyTagged") + 1);
+                level = TagResults.Details.parse(details);
+                Set<String> tagIds = uniqueTagIds(request.getTagIds());
+                Set<String> untagIds = uniqueTagIds(request.getUntagIds());
+                for (String tagId : tagIds) {
+                    if (untagIds.contains(tagId)) {
+                        throw new IllegalArgumentException("tag " + tagId + " is both added and removed");
+                    }
+                    operations.add(KitTaggingService.Operation.tag(tagId));
+                }
+                for (String tagId : untagIds) {
+                    operations.add(KitTaggingService.Operation.untag(tagId));
+                }
+                if (operations.isEmpty()) {
+                    throw new IllegalArgumentException("tagIds or untagIds must name at least one tag");
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+            }
+
+            List<String> received = request.getEmails() != null ? request.getEmails() : Collections.emptyList();
+            EmailArena unique = new EmailArena(received.size());
+            int blank = 0;
+            for (String email : received) {
+                if (email == null || email.isBlank()) {
+                    blank++;
+                } else {
+                    unique.add(SubscriberSnapshotCache.normalise(email));
                 }
+            }
+            List<String> emails = unique.freeze().asList();
+            logger.info("Applying {} tag operations to {} emails", operations.size(), emails.size());
+
+            TagResults[] results = new TagResults[operations.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = new TagResults(request.isIncludeBodies(), emails.size());
+            }
+            try {
+                kitTaggingService.applyAll(KitApiKeyContext.getApiKey(), operations, emails,
+                    (operation, outcome, position) -> results[operation].add(outcome, position));
             } catch (Exception e) {
-                logger.error("Error tagging subscriber {}: {}", email, e.getMessage());
-                detail.put("status", "ERROR");
-                detail.put("result", e.getMessage());
-                
-                results.put("failed", results.get("failed") + 1);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+            }
+
+            List<Map<String, Object>> summaries = new ArrayList<>();
+            boolean hasErrors = false;
+            for (int i = 0; i < results.length; i++) {
+                KitTaggingService.Operation operation = operations.get(i);
+                Map<String, Object> summary = new HashMap<>();
+                summary.put("tagId", operation.getTagId());
+                summary.put("operation", operation.isUntag() ? "untag" : "tag");
+                summarise(results[i], level, operation.isUntag(), summary);
+                summaries.add(summary);
+                hasErrors |= results[i].count(TagOutcome.Result.FAILED) > 0;
+            }
+            Map<String, Object> counts = new HashMap<>();
+            counts.put("received", received.size());
+            counts.put("unique", emails.size());
+            counts.put("blank", blank);
+            counts.put("duplicates", received.size() - blank - emails.size());
+            Map<String, Object> response = new HashMap<>();
+            response.put("emails", counts);
+            response.put("operations", summaries);
+            return ResponseEntity
+                .status(hasErrors ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .body(response);
+        });
+    }
+
+    private static Set<String> uniqueTagIds(List<String> tagIds) {
+        Set<String> unique = new LinkedHashSet<>();
+        if (tagIds != null) {
+            for (String tagId : tagIds) {
+                if (tagId != null && !tagId.isBlank()) {
+                    unique.add(tagId.trim());
+                }
             }
-            
-            emailDetails.add(detail);
         }
+        return unique;
+    }
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("message", String.format(
-            "Processing complete. Successfully tagged: %d, Already tagged: %d, Failed: %d",
-            results.get("success"),
-            results.get("alreadyTagged"),
-            results.get("failed")
-        ));
-        response.put("details", results);
-        response.put("emailDetails", emailDetails);
+    /**
+     * Tags the subscribers listed in a CSV sent as the raw request body (text/csv).
+     * Rows are parsed, normalised and deduplicated as they arrive and fed straight into the tagging pipeline,
+     * so the first calls to Kit start while the rest of the upload is still coming in.
+     * The response is the same as for /tag-subscribers, plus the number of rows read, skipped and duplicated.
+     * Like the other tagging endpoints it runs on KitRequestExecutor; the body is read there, off the servlet thread.
+     */
+    @PostMapping(value = "/tag-subscribers/csv", consumes = { "text/csv", MediaType.TEXT_PLAIN_VALUE })
+    public CompletableFuture<ResponseEntity<?>> tagSubscribersFromCsv(@RequestParam String tagId, InputStream body,
+            @RequestParam(defaultValue = "all") String details, @RequestParam(defaultValue = "false") boolean includeBodies) {
+        return async(() -> tagCsv(tagId, body, details, includeBodies));
+    }
+
+    /**
+     * Same as tagSubscribersFromCsv, for a CSV uploaded as the "file" part of a multipart form.
+     */
+    @PostMapping(value = "/tag-subscribers/csv", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CompletableFuture<ResponseEntity<?>> tagSubscribersFromCsvUpload(@RequestParam String tagId,
+            @RequestParam("file") MultipartFile file, @RequestParam(defaultValue = "all") String details,
+            @RequestParam(defaultValue = "false") boolean includeBodies) {
+        return async(() -> {
+            try (InputStream body = file.getInputStream()) {
+                return tagCsv(tagId, body, details, includeBodies);
+            } catch (IOException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+            }
+        });
+    }
+
+    private ResponseEntity<?> tagCsv(String tagId, InputStream body, String details, boolean includeBodies) {
+        logger.info("Tagging emails from CSV upload with tag: {}", tagId);
+        CsvEmailReader reader = new CsvEmailReader(body);
+
+        // Outcomes arrive from the workers out of order; TagResults keeps their input positions
+        TagResults results = new TagResults(includeBodies);
+        try {
+            TagResults.Details level = TagResults.Details.parse(details);
+            kitTaggingService.tagAll(KitApiKeyContext.getApiKey(), tagId, reader, results::add);
+            logger.info("CSV upload: {} rows, {} skipped, {} duplicates", reader.getRows(), reader.getSkipped(), reader.getDuplicates());
+
+            Map<String, Object> csv = new HashMap<>();
+            csv.put("rows", reader.getRows());
+            csv.put("skipped", reader.getSkipped());
+            csv.put("duplicates", reader.getDuplicates());
+            Map<String, Object> extra = new HashMap<>();
+            extra.put("csv", csv);
+            return buildTagResponse(results, level, extra);
+        } catch (UncheckedIOException e) {
+            logger.error("Error reading CSV upload: ", e);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error reading CSV: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+        }
+    }
 
-        boolean hasErrors = results.get("failed") > 0;
+    /**
+     * Builds the tagging response: counts of success, already tagged and failed, a summary message,
+     * and, unless details is NONE, a detail entry per email (or per failed email), in input order.
+     * Package-private so TagResponseBenchmark can measure it.
+     */
+    static ResponseEntity<?> buildTagResponse(TagResults outcomes, TagResults.Details details, Map<String, Object> response) {
+        summarise(outcomes, details, false, response);
+        boolean hasErrors = outcomes.count(TagOutcome.Result.FAILED) > 0;
         return ResponseEntity
             .status(hasErrors ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
             .body(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Puts the counts, message and details of buildTagResponse into the response map.
+     * With untag, the outcomes are of removing a tag and success counts the subscribers it was removed from.
+     */
+    private static void summarise(TagResults outcomes, TagResults.Details details, boolean untag,
+            Map<String, Object> response) {
+        // Initialize results map to track success, already tagged, and failed counts
+        Map<String, Integer> results = new HashMap<>();
+        results.put("success", outcomes.count(untag ? TagOutcome.Result.UNTAGGED : TagOutcome.Result.TAGGED));
+        results.put("alreadyTagged", outcomes.count(TagOutcome.Result.ALREADY_TAGGED));
+        results.put("failed", outcomes.count(TagOutcome.Result.FAILED));
+
+        if (details != TagResults.Details.NONE) {
+            // Each detail includes the email address, http status, and result, which is the error message
+            // on failure, or the response body on success when bodies were kept.
+            List<Map<String, Object>> emailDetails = new ArrayList<>();
+            for (int sequence : outcomes.inputOrder()) {
+                if (!details.includes(outcomes.getResult(sequence))) {
+                    continue;
+                }
+                TagOutcome outcome = outcomes.getOutcome(sequence);
+                Map<String, Object> detail = new HashMap<>();
+                detail.put("email", outcome.getEmail());
+                detail.put("status", outcome.getResult() == TagOutcome.Result.FAILED ? "ERROR" : outcome.getStatus());
+                detail.put("result", outcome.getBody());
+                emailDetails.add(detail);
+            }
+            response.put("emailDetails", emailDetails);
+        }
+
+        if (untag) {
+            response.put("message", String.format(
+                "Processing complete. Successfully untagged: %d, Failed: %d",
+                results.get("success"),
+                results.get("failed")
+            ));
+        } else {
+            response.put("message", String.format(
+                "Processing complete. Successfully tagged: %d, Already tagged: %d, Failed: %d",
+                results.get("success"),
+                results.get("alreadyTagged"),
+                results.get("failed")
+            ));
+        }
+        response.put("details", results);
+    }
+}
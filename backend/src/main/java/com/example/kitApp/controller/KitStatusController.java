@@ -0,0 +1,50 @@
+package com.example.kitApp.controller;
+
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.service.KitCallGuard;
+import com.example.kitApp.service.KitRateLimiter;
+
+import java.util.*;
+
+/**
+ * KitStatusController reports how calls to Kit are being held back for the caller's API key.
+ */
+@RestController
+@RequestMapping("/api/kit")
+public class KitStatusController {
+
+    private final KitCallGuard callGuard;
+    private final KitRateLimiter rateLimiter;
+
+    public KitStatusController(KitCallGuard callGuard, KitRateLimiter rateLimiter) {
+        this.callGuard = callGuard;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Returns the key's circuit breaker state (CLOSED, OPEN or HALF_OPEN), its consecutive failures and,
+     * while open, how long until the next trial call; the bulkhead's calls in flight and limit;
+     * and the rate the key is currently allowed, in requests per minute. Only the caller's own key is reported.
+     */
+    @GetMapping("/status")
+    public ResponseEntity<?> getStatus() {
+        String keyFingerprint = KitApiKeyContext.fingerprint(KitApiKeyContext.getApiKey());
+        KitCallGuard.Status status = callGuard.status(keyFingerprint);
+
+        Map<String, Object> circuit = new HashMap<>();
+        circuit.put("state", status.getCircuit());
+        circuit.put("consecutiveFailures", status.getConsecutiveFailures());
+        circuit.put("retryInMillis", status.getRetryInMillis());
+        Map<String, Object> bulkhead = new HashMap<>();
+        bulkhead.put("callsInFlight", status.getCallsInFlight());
+        bulkhead.put("maxCalls", status.getMaxCalls());
+        Map<String, Object> response = new HashMap<>();
+        response.put("circuit", circuit);
+        response.put("bulkhead", bulkhead);
+        response.put("rateLimitPerMinute", Math.round(rateLimiter.currentRatePerMinute(keyFingerprint)));
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.kitApp.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.kitApp.model.TagOutcome;
+import com.example.kitApp.model.TagSubscribersRequest;
+import com.example.kitApp.service.CsvEmailReader;
+import com.example.kitApp.service.TagJob;
+import com.example.kitApp.service.TagJobService;
+import com.example.kitApp.service.TagResults;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TagJobController runs tagging as background jobs. Submitting returns a job ID straight away;
+ * progress and per-email outcomes can then be polled, or followed as server-sent events.
+ */
+@RestController
+@RequestMapping("/api/tag-jobs")
+public class TagJobController {
+    private static final Logger logger = LoggerFactory.getLogger(TagJobController.class);
+
+    private final TagJobService tagJobService;
+    private final Duration sseTimeout;
+    private final int maxPageSize;
+    // writes /events streams to their clients, so the tagging workers never wait on a client's socket
+    private final ExecutorService eventSenders;
+
+    public TagJobController(TagJobService tagJobService,
+            @Value("${kit.tagging.jobs.sse-timeout:30m}") Duration sseTimeout,
+            @Value("${kit.tagging.jobs.max-page-size:10000}") int maxPageSize,
+            @Value("${kit.tagging.jobs.sse-sender-threads:8}") int sseSenderThreads) {
+        this.tagJobService = tagJobService;
+        this.sseTimeout = sseTimeout;
+        this.maxPageSize = maxPageSize;
+        AtomicInteger counter = new AtomicInteger();
+        this.eventSenders = Executors.newFixedThreadPool(sseSenderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "kit-sse-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a tag job for the emails and tag ID in the request. Returns 202 with the job ID,
+     * or 503 if too many jobs are already waiting.
+     * resumeJobId names an earlier job for the same tag that did not complete (e.g. one cut off by a restart);
+     * the emails it already tagged are skipped.
+     */
+    @PostMapping
+    public ResponseEntity<?> submitJob(@RequestBody TagSubscribersRequest request,
+            @RequestParam(required = false) String resumeJobId) {
+        if (request.getEmails() == null || request.getTagId() == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Emails and tag ID are required.");
+        }
+        try {
+            TagJob job = tagJobService.submit(request.getTagId(), request.getEmails(), request.isIncludeBodies(), resumeJobId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(summary(job));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Tag job queue is full, rejecting job for {} emails", request.getEmails().size());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many tag jobs queued, try again later.");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queues a tag job for the emails in a CSV sent as the raw request body. The job reads the upload itself
+     * (through CsvEmailReader, which normalises and deduplicates the rows), so tagging starts on the first rows
+     * while the rest are still arriving and the file is never held in memory. The request is answered with the
+     * job once the whole upload has been read, so the summary already has the job's total; a job that has to
+     * wait for a free job slot holds its upload until then.
+     */
+    @PostMapping(value = "/csv", consumes = { "text/csv", MediaType.TEXT_PLAIN_VALUE })
+    public CompletableFuture<ResponseEntity<?>> submitCsvJob(@RequestParam String tagId, InputStream body,
+            @RequestParam(defaultValue = "false") boolean includeBodies,
+            @RequestParam(required = false) String resumeJobId) {
+        CsvEmailReader reader = new CsvEmailReader(body);
+        TagJob job;
+        try {
+            job = tagJobService.submitStream(tagId, reader, includeBodies, resumeJobId);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Tag job queue is full, rejecting CSV job");
+            return CompletableFuture.completedFuture(
+                ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many tag jobs queued, try again later."));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage()));
+        }
+        return job.getInputRead().handle((total, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                String prefix = cause instanceof UncheckedIOException ? "Error reading CSV: " : "Error: ";
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(prefix + cause.getMessage());
+            }
+            logger.info("CSV upload: {} rows, {} skipped, {} duplicates", reader.getRows(), reader.getSkipped(), reader.getDuplicates());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(summary(job));
+        });
+    }
+
+    /**
+     * Returns the job's progress, plus the per-email outcomes completed after the given offset
+     * (in completion order). Pass the returned nextOffset on the next poll to get only new outcomes.
+     *
+     * At most limit outcomes are read per poll, so the response stays small however big the job is.
+     * details=failures lists only the failed emails among them (nextOffset still moves past the rest),
+     * and details=none returns the summary alone.
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable String jobId, @RequestParam(defaultValue = "0") int from,
+            @RequestParam(defaultValue = "1000") int limit, @RequestParam(defaultValue = "all") String details) {
+        TagJob job = tagJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No such tag job.");
+        }
+        TagResults.Details level;
+        try {
+            level = TagResults.Details.parse(details);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error: " + e.getMessage());
+        }
+
+        Map<String, Object> response = summary(job);
+        if (level == TagResults.Details.NONE) {
+            response.put("nextOffset", job.getProcessed());
+            return ResponseEntity.ok(response);
+        }
+
+        List<Map<String, Object>> emailDetails = new ArrayList<>();
+        List<TagJob.Entry> entries = job.getEntries(from, Math.min(Math.max(limit, 1), maxPageSize));
+        for (TagJob.Entry entry : entries) {
+            if (level.includes(entry.getOutcome().getResult())) {
+                emailDetails.add(detail(entry));
+            }
+        }
+        response.put("emailDetails", emailDetails);
+        response.put("nextOffset", Math.max(from, 0) + entries.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Streams the job as server-sent events: an "outcome" event per processed email (earlier outcomes
+     * are replayed first), then a single "complete" event with the final summary.
+     * Events are written by a sender thread (see TagJobEventRelay); a slow client just falls behind.
+     * The return type has to name SseEmitter for Spring to stream it, so an unknown job is a bodiless 404.
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(@PathVariable String jobId) {
+        TagJob job = tagJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        new TagJobEventRelay(job, emitter, eventSenders).start();
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventSenders.shutdownNow();
+    }
+
+    static Map<String, Object> summary(TagJob job) {
+        Map<String, Integer> results = new HashMap<>();
+        results.put("success", job.getSuccess());
+        results.put("alreadyTagged", job.getAlreadyTagged());
+        results.put("failed", job.getFailed());
+        results.put("skipped", job.getSkipped());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.getId());
+        response.put("tagId", job.getTagId());
+        response.put("status", job.getStatus());
+        response.put("total", job.getTotal());
+        response.put("processed", job.getProcessed());
+        response.put("details", results);
+        if (job.getStatus() == TagJob.Status.COMPLETED) {
+            response.put("message", String.format(
+                "Processing complete. Successfully tagged: %d, Already tagged: %d, Failed: %d",
+                job.getSuccess(), job.getAlreadyTagged(), job.getFailed()));
+        } else if (job.getStatus() == TagJob.Status.FAILED) {
+            response.put("message", "Processing failed: " + job.getError());
+        }
+        return response;
+    }
+
+    static Map<String, Object> detail(TagJob.Entry entry) {
+        TagOutcome outcome = entry.getOutcome();
+        Map<String, Object> detail = new HashMap<>();
+        detail.put("index", entry.getIndex());
+        detail.put("email", outcome.getEmail());
+        detail.put("status", outcome.getResult() == TagOutcome.Result.FAILED ? "ERROR" : outcome.getStatus());
+        detail.put("result", outcome.getBody());
+        return detail;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.kitApp.controller;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.kitApp.service.TagJob;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes one tag job's events to one SSE client.
+ *
+ * The listener callbacks run on the tagging workers, so they only note that there is something new and make
+ * sure a drain is scheduled on the sender pool. The drain reads the outcomes back from the job itself (the job
+ * keeps all of them anyway, so nothing is queued per client) and writes them to the client. A slow or stalled
+ * client therefore only holds up its own drain, never the tagging of this or any other job.
+ */
+class TagJobEventRelay implements TagJob.Listener {
+
+    // outcomes read from the job per pass
+    private static final int BATCH_SIZE = 256;
+
+    private final TagJob job;
+    private final SseEmitter emitter;
+    private final Executor senders;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean finished;
+    private volatile boolean closed;
+    // next outcome sequence to send, only touched by the drain holding the draining flag
+    private int next;
+
+    TagJobEventRelay(TagJob job, SseEmitter emitter, Executor senders) {
+        this.job = job;
+        this.emitter = emitter;
+        this.senders = senders;
+    }
+
+    /**
+     * Starts relaying: replays the outcomes so far, then follows the job until it finishes.
+     */
+    void start() {
+        emitter.onCompletion(this::close);
+        emitter.onTimeout(this::close);
+        emitter.onError(e -> close());
+        job.subscribe(this);
+        schedule();
+    }
+
+    @Override
+    public void onOutcome(TagJob job, TagJob.Entry entry) {
+        schedule();
+    }
+
+    @Override
+    public void onFinished(TagJob job) {
+        finished = true;
+        schedule();
+    }
+
+    private void schedule() {
+        if (closed || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            senders.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            close();
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!closed) {
+                // read before the entries, so every outcome recorded before the job finished is sent first
+                boolean finishedBefore = finished;
+                List<TagJob.Entry> entries = job.getEntries(next, BATCH_SIZE);
+                for (TagJob.Entry entry : entries) {
+                    Map<String, Object> data = TagJobController.detail(entry);
+                    data.put("processed", entry.getSequence() + 1);
+                    data.put("total", job.getTotal());
+                    emitter.send(SseEmitter.event().name("outcome").id(String.valueOf(entry.getSequence())).data(data));
+                    next = entry.getSequence() + 1;
+                }
+                if (!entries.isEmpty()) {
+                    continue;
+                }
+                if (finishedBefore) {
+                    emitter.send(SseEmitter.event().name("complete").data(TagJobController.summary(job)));
+                    close();
+                    emitter.complete();
+                    return;
+                }
+
+                draining.set(false);
+                // something may have been signalled between the read and the reset; carry on unless
+                // that signal already scheduled a drain of its own
+                if ((job.getProcessed() <= next && !finished) || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // client went away or the stream already ended; the job carries on regardless
+            close();
+        }
+    }
+
+    private void close() {
+        closed = true;
+        job.unsubscribe(this);
+    }
+}
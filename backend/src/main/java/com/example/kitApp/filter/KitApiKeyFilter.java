@@ -21,7 +21,7 @@ import jakarta.servlet.http.HttpServletRequest;
 public class KitApiKeyFilter implements Filter {
     private static final Logger logger = LoggerFactory.getLogger(KitApiKeyFilter.class);
 
-    private static final String API_KEY_HEADER = "Kit-Api-Key";
+    public static final String API_KEY_HEADER = "Kit-Api-Key";
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
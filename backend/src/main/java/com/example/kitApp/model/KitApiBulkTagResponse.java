@@ -0,0 +1,36 @@
+package com.example.kitApp.model;
+
+import java.util.Collections;
+import java.util.List;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Response from Kit's bulk tag endpoint when the request is processed synchronously (100 taggings or fewer).
+ * Taggings that could not be applied are listed under failures, everything else succeeded.
+ */
+public class KitApiBulkTagResponse {
+    private List<Failure> failures;
+
+    public static class Failure {
+        private Tagging tagging;
+        private List<String> errors;
+
+        public Tagging getTagging() { return tagging; }
+        public List<String> getErrors() { return errors; }
+    }
+
+    public static class Tagging {
+        @JsonProperty("tag_id")
+        private Long tagId;
+
+        @JsonProperty("subscriber_id")
+        private Long subscriberId;
+
+        public Long getTagId() { return tagId; }
+        public Long getSubscriberId() { return subscriberId; }
+    }
+
+    public List<Failure> getFailures() {
+        return failures == null ? Collections.emptyList() : failures;
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.kitApp.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.util.List;
 
 public class KitApiTagsResponse {
     private List<Tag> tags;
+    private Pagination pagination;
 
     public static class Tag {
         private String id;
@@ -13,5 +16,17 @@ public class KitApiTagsResponse {
         public String getName() { return name; }
     }
 
+    public static class Pagination {
+        @JsonProperty("has_next_page")
+        private Boolean hasNextPage;
+
+        @JsonProperty("end_cursor")
+        private String endCursor;
+
+        public Boolean getHasNextPage() { return hasNextPage; }
+        public String getEndCursor() { return endCursor; }
+    }
+
     public List<Tag> getTags() { return tags; }
+    public Pagination getPagination() { return pagination; }
 }
@@ -0,0 +1,10 @@
+package com.example.kitApp.model;
+
+/**
+ * Like SubscriberSink, for readers that also want each subscriber's state and creation time as Kit sent them
+ * (e.g. an export). Either may be null when Kit left it out.
+ */
+@FunctionalInterface
+public interface SubscriberDetailSink {
+    void accept(long id, String email, String state, String createdAt);
+}
@@ -0,0 +1,101 @@
+package com.example.kitApp.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One page of Kit's subscriber list, kept as parallel arrays: only the id, email and whether the
+ * subscriber is active are held, with no per-subscriber wrapper object.
+ * Pages fetched with details (see KitApiService.fetchSubscriberDetails) also hold each state and creation time.
+ * Filled by the streaming parser and read-only once returned by KitApiService.
+ */
+public class SubscriberPage implements SubscriberSink, SubscriberDetailSink {
+    private long[] ids;
+    private String[] emails;
+    private boolean[] active;
+    // null unless the page was filled with details
+    private String[] states;
+    private String[] createdAts;
+    private int size;
+
+    // Kit returns an "end_cursor" for pagination to fetch the next set of results
+    // currently, end_cursor is always supplied, even if there are no more results
+    private String endCursor;
+    // null when Kit did not say
+    private Boolean hasNextPage;
+
+    public SubscriberPage() {
+        this(16);
+    }
+
+    public SubscriberPage(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        this.ids = new long[capacity];
+        this.emails = new String[capacity];
+        this.active = new boolean[capacity];
+    }
+
+    /**
+     * Builds a page of active subscribers without IDs, e.g. for tests and fakes.
+     */
+    public static SubscriberPage of(List<String> emailAddresses, String endCursor) {
+        SubscriberPage page = new SubscriberPage(emailAddresses.size());
+        for (String email : emailAddresses) {
+            page.accept(0, email, true);
+        }
+        page.setEndCursor(endCursor);
+        return page;
+    }
+
+    @Override
+    public void accept(long id, String email, boolean isActive) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+            active = Arrays.copyOf(active, capacity);
+            if (states != null) {
+                states = Arrays.copyOf(states, capacity);
+                createdAts = Arrays.copyOf(createdAts, capacity);
+            }
+        }
+        ids[size] = id;
+        emails[size] = email;
+        active[size] = isActive;
+        size++;
+    }
+
+    @Override
+    public void accept(long id, String email, String state, String createdAt) {
+        if (states == null) {
+            states = new String[ids.length];
+            createdAts = new String[ids.length];
+        }
+        // same rule as SubscriberPageParser: no state means active
+        accept(id, email, state == null || "active".equals(state));
+        states[size - 1] = state;
+        createdAts[size - 1] = createdAt;
+    }
+
+    /**
+     * Passes every subscriber on the page to the sink, in the order Kit listed them.
+     */
+    public void forEach(SubscriberSink sink) {
+        for (int i = 0; i < size; i++) {
+            sink.accept(ids[i], emails[i], active[i]);
+        }
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public long getId(int index) { return ids[index]; }
+    public String getEmail(int index) { return emails[index]; }
+    public boolean isActive(int index) { return active[index]; }
+    public String getState(int index) { return states != null ? states[index] : null; }
+    public String getCreatedAt(int index) { return createdAts != null ? createdAts[index] : null; }
+
+    public String getEndCursor() { return endCursor; }
+    public void setEndCursor(String endCursor) { this.endCursor = endCursor; }
+    public Boolean getHasNextPage() { return hasNextPage; }
+    public void setHasNextPage(Boolean hasNextPage) { this.hasNextPage = hasNextPage; }
+}
@@ -0,0 +1,10 @@
+package com.example.kitApp.model;
+
+/**
+ * Receives subscribers one at a time as they are parsed, without a Subscriber object per row.
+ * The id is 0 when Kit did not send one.
+ */
+@FunctionalInterface
+public interface SubscriberSink {
+    void accept(long id, String email, boolean active);
+}
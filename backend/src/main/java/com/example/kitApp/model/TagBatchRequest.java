@@ -0,0 +1,24 @@
+package com.example.kitApp.model;
+
+import java.util.List;
+
+/**
+ * The request sent from the frontend to the backend
+ * to add several tags to, and remove several tags from, the same list of subscribers.
+ */
+public class TagBatchRequest {
+    private List<String> emails;
+    private List<String> tagIds;
+    private List<String> untagIds;
+    // Keep Kit's response body for every email, not just the failure messages
+    private boolean includeBodies;
+
+    public List<String> getEmails() { return emails; }
+    public void setEmails(List<String> emails) { this.emails = emails; }
+    public List<String> getTagIds() { return tagIds; }
+    public void setTagIds(List<String> tagIds) { this.tagIds = tagIds; }
+    public List<String> getUntagIds() { return untagIds; }
+    public void setUntagIds(List<String> untagIds) { this.untagIds = untagIds; }
+    public boolean isIncludeBodies() { return includeBodies; }
+    public void setIncludeBodies(boolean includeBodies) { this.includeBodies = includeBodies; }
+}
@@ -0,0 +1,58 @@
+package com.example.kitApp.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The outcome of tagging (or untagging) a single email address.
+ * Status is the HTTP status returned by Kit, or 0 when the call failed without a usable response.
+ */
+public class TagOutcome {
+
+    public enum Result {
+        // Kit returned 201, the subscriber was newly tagged
+        TAGGED,
+        // Kit returned 200, the subscriber already had the tag
+        ALREADY_TAGGED,
+        // The call threw, e.g. the subscriber does not exist or Kit rejected the request
+        FAILED,
+        // Any other successful status, reported in the details but not counted
+        OTHER,
+        // Kit accepted the removal of the tag
+        UNTAGGED
+    }
+
+    private final String email;
+    private final Result result;
+    private final int status;
+    private final String body;
+
+    public TagOutcome(String email, Result result, int status, String body) {
+        this.email = email;
+        this.result = result;
+        this.status = status;
+        this.body = body;
+    }
+
+    public static TagOutcome fromResponse(String email, ResponseEntity<String> response) {
+        int status = response.getStatusCode().value();
+        Result result;
+        if (status == HttpStatus.CREATED.value()) {
+            result = Result.TAGGED;
+        } else if (status == HttpStatus.OK.value()) {
+            result = Result.ALREADY_TAGGED;
+        } else {
+            result = Result.OTHER;
+        }
+        return new TagOutcome(email, result, status, response.getBody());
+    }
+
+    public static TagOutcome failed(String email, String message) {
+        return new TagOutcome(email, Result.FAILED, 0, message);
+    }
+
+    public String getEmail() { return email; }
+    public Result getResult() { return result; }
+    public int getStatus() { return status; }
+    public String getBody() { return body; }
+}
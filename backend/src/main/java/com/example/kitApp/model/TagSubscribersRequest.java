@@ -9,9 +9,13 @@ import java.util.List;
 public class TagSubscribersRequest {
     private List<String> emails;
     private String tagId;
+    // Keep Kit's response body for every email, not just the failure messages
+    private boolean includeBodies;
 
     public List<String> getEmails() { return emails; }
     public void setEmails(List<String> emails) { this.emails = emails; }
     public String getTagId() { return tagId; }
     public void setTagId(String tagId) { this.tagId = tagId; }
+    public boolean isIncludeBodies() { return includeBodies; }
+    public void setIncludeBodies(boolean includeBodies) { this.includeBodies = includeBodies; }
 }
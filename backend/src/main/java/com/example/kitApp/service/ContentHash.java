@@ -0,0 +1,34 @@
+package com.example.kitApp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hashes a sequence of strings, e.g. to derive an ETag from the data behind a response without serialising it.
+ * Values are separated so ["ab", "c"] and ["a", "bc"] hash differently. The hash is a truncated SHA-256,
+ * which is plenty to tell versions of the same resource apart.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static String of(Iterable<String> values) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (String value : values) {
+            if (value != null) {
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) '\n');
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.kitApp.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads email addresses from an uploaded CSV one row at a time, so tagging can start on the first rows
+ * while the rest of the upload is still arriving.
+ *
+ * Each row contributes the first field that looks like an email (contains '@'), trimmed, unquoted and
+ * lower-cased. Rows without one (blank lines, a header row) are counted as skipped, and addresses already
+ * seen earlier in the file are counted as duplicates and not returned again.
+ * The iterator can only be walked once, and I/O errors surface as UncheckedIOException.
+ */
+public class CsvEmailReader implements Iterable<String> {
+
+    private final BufferedReader reader;
+    // emails already returned, packed so a large upload's dedup set stays small
+    private final EmailArena seen = new EmailArena();
+    private boolean iterated;
+
+    private int rows;
+    private int skipped;
+    private int duplicates;
+
+    public CsvEmailReader(InputStream input) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("CSV input can only be read once");
+        }
+        iterated = true;
+        return new Iterator<>() {
+            private String next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                String current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    private String advance() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (rows == 0 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                rows++;
+                String email = extractEmail(line);
+                if (email == null) {
+                    skipped++;
+                } else if (!seen.add(email)) {
+                    duplicates++;
+                } else {
+                    return email;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the first field on the line containing '@', normalised, or null if there is none.
+     */
+    static String extractEmail(String line) {
+        for (String field : line.split("[,;\\t]")) {
+            String value = field.trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1).replace("\"\"", "\"").trim();
+            }
+            if (value.indexOf('@') > 0) {
+                return value.toLowerCase(Locale.ROOT);
+            }
+        }
+        return null;
+    }
+
+    public int getRows() { return rows; }
+    public int getSkipped() { return skipped; }
+    public int getDuplicates() { return duplicates; }
+}
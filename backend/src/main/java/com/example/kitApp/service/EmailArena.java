@@ -0,0 +1,516 @@
+package com.example.kitApp.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact insertion-ordered set of email addresses, each with an optional long value (e.g. a Kit subscriber ID).
+ *
+ * Instead of a String, a map entry and a boxed Long per email, the UTF-8 bytes of every email are packed into one
+ * byte array, next to int columns holding where each one starts and its hash, and an open-addressing (linear
+ * probing) index over those positions. A subscriber costs its email's bytes plus about 14 bytes (22 with values),
+ * several times less than a LinkedHashMap&lt;String, Long&gt;. Strings are only created when an email is read back.
+ *
+ * Emails are stored exactly as given; callers normalise them first if they want them compared that way.
+ * Removed emails leave their bytes behind until the arena is compacted, which happens once they make up half of it.
+ * Not thread safe while it is being filled. Once frozen it can no longer change and can be read from any thread,
+ * so it can be handed out, e.g. to be serialised, while its owner carries on with a copy.
+ * The asSet and asList views are read-only and serialise to a JSON array straight from the packed bytes.
+ */
+public class EmailArena {
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private byte[] bytes;
+    private int used;
+    // starts[slot] is where the email in slot begins; starts[count] == used
+    private int[] starts;
+    private int[] hashes;
+    // allocated on the first non-zero value
+    private long[] values;
+    // slots whose email was removed, null while there are none
+    private BitSet removed;
+    private int removedCount;
+    // number of slots, removed ones included
+    private int count;
+
+    // slot + 1 per occupied bucket, 0 for an empty one
+    private int[] table;
+    private int mask;
+    private boolean frozen;
+
+    public EmailArena() {
+        this(16);
+    }
+
+    public EmailArena(int expectedSize) {
+        int capacity = Math.max(expectedSize, 4);
+        this.bytes = new byte[capacity * 24];
+        this.starts = new int[capacity + 1];
+        this.hashes = new int[capacity];
+        int buckets = 8;
+        while (buckets * MAX_LOAD < capacity) {
+            buckets <<= 1;
+        }
+        this.table = new int[buckets];
+        this.mask = buckets - 1;
+    }
+
+    private EmailArena(EmailArena source) {
+        this.bytes = Arrays.copyOf(source.bytes, Math.max(source.used, 16));
+        this.used = source.used;
+        this.starts = source.starts.clone();
+        this.hashes = source.hashes.clone();
+        this.values = source.values != null ? source.values.clone() : null;
+        this.removed = source.removed != null ? (BitSet) source.removed.clone() : null;
+        this.removedCount = source.removedCount;
+        this.count = source.count;
+        this.table = source.table.clone();
+        this.mask = source.mask;
+    }
+
+    /**
+     * Adds the email if it is not in the arena yet. Returns true if it was added.
+     */
+    public boolean add(String email) {
+        checkWritable();
+        byte[] encoded = encode(email);
+        int hash = hash(encoded);
+        if (find(encoded, hash) >= 0) {
+            return false;
+        }
+        append(encoded, hash, 0);
+        return true;
+    }
+
+    /**
+     * Adds the email with the value, or replaces the value if the email is already there (keeping its position).
+     * Returns true if the email was added.
+     */
+    public boolean put(String email, long value) {
+        checkWritable();
+        byte[] encoded = encode(email);
+        int hash = hash(encoded);
+        int bucket = find(encoded, hash);
+        if (bucket >= 0) {
+            setValue(table[bucket] - 1, value);
+            return false;
+        }
+        append(encoded, hash, value);
+        return true;
+    }
+
+    /**
+     * Removes the email. Returns true if it was there.
+     */
+    public boolean remove(String email) {
+        checkWritable();
+        byte[] encoded = encode(email);
+        int bucket = find(encoded, hash(encoded));
+        if (bucket < 0) {
+            return false;
+        }
+        int slot = table[bucket] - 1;
+        unindex(bucket);
+        if (removed == null) {
+            removed = new BitSet(count);
+        }
+        removed.set(slot);
+        removedCount++;
+        if (removedCount > 64 && removedCount * 2 > count) {
+            compact();
+        }
+        return true;
+    }
+
+    public boolean contains(String email) {
+        if (email == null || size() == 0) {
+            return false;
+        }
+        byte[] encoded = encode(email);
+        return find(encoded, hash(encoded)) >= 0;
+    }
+
+    /**
+     * The value stored with the email, or 0 if it has none or is not in the arena.
+     */
+    public long getValue(String email) {
+        if (email == null || values == null) {
+            return 0;
+        }
+        byte[] encoded = encode(email);
+        int bucket = find(encoded, hash(encoded));
+        return bucket >= 0 ? values[table[bucket] - 1] : 0;
+    }
+
+    public int size() {
+        return count - removedCount;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Compacts the arena, trims its arrays to size and makes it read-only from now on. Returns this arena.
+     */
+    public EmailArena freeze() {
+        if (!frozen) {
+            compact();
+            bytes = Arrays.copyOf(bytes, used);
+            starts = Arrays.copyOf(starts, count + 1);
+            hashes = Arrays.copyOf(hashes, count);
+            if (values != null) {
+                values = Arrays.copyOf(values, count);
+            }
+            frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * A writable copy of this arena, without the bytes of removed emails.
+     */
+    public EmailArena copy() {
+        EmailArena copy = new EmailArena(this);
+        copy.compact();
+        return copy;
+    }
+
+    /**
+     * Passes every email with its value to the consumer, in insertion order.
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < count; slot++) {
+            if (isLive(slot)) {
+                consumer.accept(decode(slot), values != null ? values[slot] : 0);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(String email, long value);
+    }
+
+    /**
+     * Writes the emails as a JSON array of strings, straight from the packed UTF-8 bytes when the generator
+     * writes bytes (as it does for HTTP responses); a generator writing characters gets decoded Strings.
+     */
+    public void writeJson(JsonGenerator json) throws IOException {
+        boolean raw = json instanceof UTF8JsonGenerator;
+        json.writeStartArray();
+        for (int slot = 0; slot < count; slot++) {
+            if (!isLive(slot)) {
+                continue;
+            }
+            if (raw) {
+                json.writeUTF8String(bytes, starts[slot], starts[slot + 1] - starts[slot]);
+            } else {
+                json.writeString(decode(slot));
+            }
+        }
+        json.writeEndArray();
+    }
+
+    /**
+     * Approximate heap held by the arena's arrays, in bytes.
+     */
+    public long footprintBytes() {
+        long footprint = bytes.length + 4L * (starts.length + hashes.length + table.length);
+        if (values != null) {
+            footprint += 8L * values.length;
+        }
+        return footprint;
+    }
+
+    /**
+     * Read-only Set view, with constant time contains. Reflects later changes to the arena.
+     */
+    public Set<String> asSet() {
+        return new SetView(this);
+    }
+
+    /**
+     * Read-only List view in insertion order. Compacts the arena first if it is not frozen,
+     * so positions line up with slots; changes made to the arena after that are not reflected safely.
+     */
+    public List<String> asList() {
+        if (!frozen && removedCount > 0) {
+            compact();
+        }
+        return new ListView(this);
+    }
+
+    private void append(byte[] encoded, int hash, long value) {
+        if (count == hashes.length) {
+            // a frozen arena is trimmed to its size, so a copy of an empty one starts with no room at all
+            int capacity = Math.max(hashes.length * 2, 4);
+            starts = Arrays.copyOf(starts, capacity + 1);
+            hashes = Arrays.copyOf(hashes, capacity);
+            if (values != null) {
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+        if (used + encoded.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, used + encoded.length));
+        }
+        System.arraycopy(encoded, 0, bytes, used, encoded.length);
+        int slot = count++;
+        hashes[slot] = hash;
+        used += encoded.length;
+        starts[slot + 1] = used;
+        setValue(slot, value);
+        if (count > table.length * MAX_LOAD) {
+            rebuildIndex(table.length * 2);
+        } else {
+            index(slot);
+        }
+    }
+
+    private void setValue(int slot, long value) {
+        if (values == null) {
+            if (value == 0) {
+                return;
+            }
+            values = new long[hashes.length];
+        }
+        values[slot] = value;
+    }
+
+    // the bucket holding the email, or -1
+    private int find(byte[] encoded, int hash) {
+        for (int bucket = hash & mask; ; bucket = (bucket + 1) & mask) {
+            int entry = table[bucket];
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            if (hashes[slot] == hash && equalsAt(slot, encoded)) {
+                return bucket;
+            }
+        }
+    }
+
+    private void index(int slot) {
+        int bucket = hashes[slot] & mask;
+        while (table[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = slot + 1;
+    }
+
+    // Backward shift deletion: moves later entries of the probe run into the hole so lookups never stop early
+    private void unindex(int bucket) {
+        int hole = bucket;
+        table[hole] = 0;
+        for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = hashes[table[next] - 1] & mask;
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                table[hole] = table[next];
+                table[next] = 0;
+                hole = next;
+            }
+        }
+    }
+
+    private void rebuildIndex(int buckets) {
+        table = new int[buckets];
+        mask = buckets - 1;
+        for (int slot = 0; slot < count; slot++) {
+            if (isLive(slot)) {
+                index(slot);
+            }
+        }
+    }
+
+    // Drops the bytes and slots of removed emails, keeping the order of the rest
+    private void compact() {
+        if (removedCount == 0) {
+            return;
+        }
+        int target = 0;
+        int write = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (!isLive(slot)) {
+                continue;
+            }
+            int start = starts[slot];
+            int length = starts[slot + 1] - start;
+            System.arraycopy(bytes, start, bytes, write, length);
+            starts[target] = write;
+            hashes[target] = hashes[slot];
+            if (values != null) {
+                values[target] = values[slot];
+            }
+            write += length;
+            target++;
+        }
+        count = target;
+        used = write;
+        starts[count] = used;
+        removed = null;
+        removedCount = 0;
+        rebuildIndex(table.length);
+    }
+
+    private boolean isLive(int slot) {
+        return removed == null || !removed.get(slot);
+    }
+
+    private boolean equalsAt(int slot, byte[] encoded) {
+        int start = starts[slot];
+        return starts[slot + 1] - start == encoded.length
+            && Arrays.equals(bytes, start, start + encoded.length, encoded, 0, encoded.length);
+    }
+
+    private String decode(int slot) {
+        return new String(bytes, starts[slot], starts[slot + 1] - starts[slot], StandardCharsets.UTF_8);
+    }
+
+    private void checkWritable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("EmailArena is frozen");
+        }
+    }
+
+    private static byte[] encode(String email) {
+        if (email == null) {
+            throw new NullPointerException("email");
+        }
+        return email.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // FNV-1a, then spread so the low bits used for buckets depend on every byte
+    private static int hash(byte[] encoded) {
+        int hash = 0x811c9dc5;
+        for (byte b : encoded) {
+            hash = (hash ^ b) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private Iterator<String> liveIterator() {
+        return new Iterator<>() {
+            private int slot = nextLive(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < count;
+            }
+
+            @Override
+            public String next() {
+                if (slot >= count) {
+                    throw new NoSuchElementException();
+                }
+                String email = decode(slot);
+                slot = nextLive(slot + 1);
+                return email;
+            }
+        };
+    }
+
+    private int nextLive(int slot) {
+        while (slot < count && !isLive(slot)) {
+            slot++;
+        }
+        return slot;
+    }
+
+    private interface View {
+        EmailArena arena();
+    }
+
+    @JsonSerialize(using = ViewSerializer.class)
+    private static class SetView extends AbstractSet<String> implements View {
+        private final EmailArena arena;
+
+        SetView(EmailArena arena) {
+            this.arena = arena;
+        }
+
+        @Override
+        public EmailArena arena() { return arena; }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String email && arena.contains(email);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return arena.liveIterator();
+        }
+
+        @Override
+        public int size() {
+            return arena.size();
+        }
+    }
+
+    @JsonSerialize(using = ViewSerializer.class)
+    private static class ListView extends AbstractList<String> implements View {
+        private final EmailArena arena;
+
+        ListView(EmailArena arena) {
+            this.arena = arena;
+        }
+
+        @Override
+        public EmailArena arena() { return arena; }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= arena.size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return arena.decode(index);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String email && arena.contains(email);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return arena.liveIterator();
+        }
+
+        @Override
+        public int size() {
+            return arena.size();
+        }
+    }
+
+    static class ViewSerializer extends StdSerializer<View> {
+        public ViewSerializer() {
+            super(View.class);
+        }
+
+        @Override
+        public void serialize(View view, JsonGenerator json, SerializerProvider provider) throws IOException {
+            view.arena().writeJson(json);
+        }
+    }
+}
@@ -1,71 +1,339 @@
 package com.example.kitApp.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 import com.example.kitApp.context.KitApiKeyContext;
-import com.example.kitApp.model.KitApiSubscribersResponse;
+import com.example.kitApp.model.KitApiBulkTagResponse;
 import com.example.kitApp.model.KitApiTagsResponse;
+import com.example.kitApp.model.SubscriberPage;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Service
 public class KitApiService {
-    private static final String KIT_API_BASE_URL = "https://api.kit.com/v4";
+    private static final Logger logger = LoggerFactory.getLogger(KitApiService.class);
+
+    // Kit allows up to 1000 tags per page
+    private static final int TAGS_PER_PAGE = 1000;
     
+    private final String baseUrl;
     private final RestTemplate restTemplate;
+    private final KitRateLimiter rateLimiter;
+    private final KitCallGuard callGuard;
+    private final SingleFlight inFlightReads = new SingleFlight();
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration retryDeadline;
+    private final int subscribersPerPage;
+    private final MeterRegistry meterRegistry;
+    // calls to Kit currently waiting on a response, across all keys
+    private final AtomicInteger inFlightCalls = new AtomicInteger();
+
+    public KitApiService(RestTemplateBuilder restTemplateBuilder,
+            @Qualifier("kitClientHttpRequestFactory") ClientHttpRequestFactory kitClientHttpRequestFactory,
+            KitRateLimiter rateLimiter,
+            KitCallGuard callGuard,
+            MeterRegistry meterRegistry,
+            @Value("${kit.retry.max-attempts:5}") int maxAttempts,
+            @Value("${kit.retry.initial-backoff:500ms}") Duration initialBackoff,
+            @Value("${kit.retry.max-backoff:10s}") Duration maxBackoff,
+            @Value("${kit.retry.deadline:60s}") Duration retryDeadline,
+            @Value("${kit.subscribers.per-page:1000}") int subscribersPerPage,
+            @Value("${kit.api.base-url:https://api.kit.com/v4}") String baseUrl) {
+        // The transport (pooled JDK HttpClient by default) and its timeouts are set up in KitHttpClientConfig
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.restTemplate = restTemplateBuilder
+            .requestFactory(() -> kitClientHttpRequestFactory)
+            .build();
+        this.rateLimiter = rateLimiter;
+        this.callGuard = callGuard;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.retryDeadline = retryDeadline;
+        this.subscribersPerPage = subscribersPerPage;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("kit.api.in-flight", inFlightCalls, AtomicInteger::get)
+            .description("Calls to Kit waiting on a response")
+            .register(meterRegistry);
+        Gauge.builder("kit.api.reads.coalesced-in-flight", inFlightReads, SingleFlight::inFlightCount)
+            .description("Distinct GETs in flight that concurrent callers can share")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Fetches one page of subscribers. The page is read with SubscriberPageParser rather than bound to
+     * KitApiSubscribersResponse, so only the ID, email and state of each subscriber are kept.
+     * Returns null if Kit sent no body.
+     */
+    public SubscriberPage fetchSubscribers(String endCursor) {
+        String url = baseUrl + "/subscribers?per_page=" + subscribersPerPage
+            + (endCursor != null ? "&after=" + endCursor : "");
+        return invokeKitAPIGetSubscriberPage("subscribers", url, false);
+    }
 
-    public KitApiService(RestTemplateBuilder restTemplateBuilder) {
-        this.restTemplate = restTemplateBuilder.build();
+    /**
+     * Like fetchSubscribers, also keeping each subscriber's state and created_at on the page, e.g. for an export.
+     * Kit only lists active subscribers unless allStates asks for every state (status=all).
+     */
+    public SubscriberPage fetchSubscriberDetails(String endCursor, boolean allStates) {
+        String url = baseUrl + "/subscribers?" + (allStates ? "status=all&" : "") + "per_page=" + subscribersPerPage
+            + (endCursor != null ? "&after=" + endCursor : "");
+        return invokeKitAPIGetSubscriberPage("subscribers", url, true);
     }
 
-    public KitApiSubscribersResponse fetchSubscribers(String endCursor) {
-        String url = KIT_API_BASE_URL + "/subscribers" + (endCursor != null ? "?after=" + endCursor : "");
-        return invokeKitAPIGet(url, KitApiSubscribersResponse.class);
+    /**
+     * Fetches subscribers in any state that were created or updated after the given date,
+     * used to refresh a cached subscriber list without walking the whole account again.
+     * Kit filters on whole days (yyyy-mm-dd), so callers should pass a date at or before the last sync.
+     */
+    public SubscriberPage fetchSubscribersUpdatedAfter(LocalDate updatedAfter, String endCursor) {
+        String url = baseUrl + "/subscribers?status=all&per_page=" + subscribersPerPage + "&updated_after=" + updatedAfter
+            + (endCursor != null ? "&after=" + endCursor : "");
+        return invokeKitAPIGetSubscriberPage("subscribers", url, false);
     }
 
-    public KitApiTagsResponse fetchTags() {
-        String url = KIT_API_BASE_URL + "/tags";
-        return invokeKitAPIGet(url, KitApiTagsResponse.class);
+    /**
+     * Fetches one page of the subscribers, in any state, that have the given tag.
+     * Returns null if Kit sent no body.
+     */
+    public SubscriberPage fetchTagSubscribers(String tagId, String endCursor) {
+        String url = baseUrl + "/tags/" + tagId + "/subscribers?status=all&per_page=" + subscribersPerPage
+            + (endCursor != null ? "&after=" + endCursor : "");
+        return invokeKitAPIGetSubscriberPage("tag_subscribers", url, false);
+    }
+
+    /**
+     * Fetches one page of tags. When ifNoneMatch is given it is sent to Kit as If-None-Match, and an
+     * unchanged page comes back as a 304 with no body. Kit's ETag, if it sends one, is in the response headers.
+     */
+    public ResponseEntity<KitApiTagsResponse> fetchTags(String endCursor, String ifNoneMatch) {
+        String url = baseUrl + "/tags?per_page=" + TAGS_PER_PAGE + (endCursor != null ? "&after=" + endCursor : "");
+        String apiKey = obtainKitApiKey();
+        HttpHeaders headers = createHeaders(apiKey);
+        if (ifNoneMatch != null) {
+            headers.setIfNoneMatch(ifNoneMatch);
+        }
+        HttpEntity<Object> entity = new HttpEntity<>(null, headers);
+        return withRetries("tags", apiKey, HttpMethod.GET, url,
+            () -> restTemplate.exchange(url, HttpMethod.GET, entity, KitApiTagsResponse.class));
     }
 
     public ResponseEntity<String> tagSubscriber(String tagId, String email) {
-        String url = KIT_API_BASE_URL + "/tags/" + tagId + "/subscribers";
+        String url = baseUrl + "/tags/" + tagId + "/subscribers";
+
+        Map<String, String> requestBody = new HashMap<>();
+        requestBody.put("email_address", email);
+
+        return invokeKitAPIPost("tag", url, requestBody, String.class);
+    }
+
+    /**
+     * Removes the tag from the subscriber with the given email. Kit answers 204 when done.
+     */
+    public ResponseEntity<String> untagSubscriber(String tagId, String email) {
+        String url = baseUrl + "/tags/" + tagId + "/subscribers";
 
         Map<String, String> requestBody = new HashMap<>();
         requestBody.put("email_address", email);
 
-        return invokeKitAPIPost(url, requestBody, String.class);
+        return exchange("untag", url, HttpMethod.DELETE, requestBody, String.class);
+    }
+
+    /**
+     * Tags up to 100 subscribers at once by subscriber ID. Larger batches are processed
+     * asynchronously by Kit and need a callback URL, so callers keep batches at or below 100.
+     */
+    public ResponseEntity<KitApiBulkTagResponse> bulkTagSubscribers(String tagId, List<Long> subscriberIds) {
+        String url = baseUrl + "/bulk/tags/subscribers";
+
+        List<Map<String, Object>> taggings = new ArrayList<>(subscriberIds.size());
+        for (Long subscriberId : subscriberIds) {
+            Map<String, Object> tagging = new HashMap<>();
+            tagging.put("tag_id", Long.valueOf(tagId));
+            tagging.put("subscriber_id", subscriberId);
+            taggings.add(tagging);
+        }
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("taggings", taggings);
+
+        return invokeKitAPIPost("bulk_tag", url, requestBody, KitApiBulkTagResponse.class);
     }
 
-    private <T> T invokeKitAPIGet(String url, Class<T> responseType) {
-        HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-        ResponseEntity<T> response = restTemplate.exchange(
-            url,
-            HttpMethod.GET,
-            entity,
-            responseType
-        );
-        return response.getBody();
+    /**
+     * Identical GETs made at the same time with the same key (same endpoint and cursor) share one upstream call,
+     * e.g. when several operators on one account open the UI together.
+     * The body is parsed as it streams in. Each attempt parses into a fresh page,
+     * so a retry after a failure part way through the body never hands out a partial page.
+     */
+    private SubscriberPage invokeKitAPIGetSubscriberPage(String endpoint, String url, boolean details) {
+        String apiKey = obtainKitApiKey();
+        HttpHeaders headers = createHeaders(apiKey);
+        // pages with and without details are different results, so they never share a call
+        String flightKey = KitApiKeyContext.fingerprint(apiKey) + " " + url + (details ? " details" : "");
+        return inFlightReads.execute(flightKey, () -> withRetries(endpoint, apiKey, HttpMethod.GET, url,
+            () -> restTemplate.execute(url, HttpMethod.GET,
+                request -> request.getHeaders().putAll(headers),
+                response -> new ResponseEntity<>(details
+                        ? SubscriberPageParser.parseWithDetails(response.getBody())
+                        : SubscriberPageParser.parse(response.getBody()),
+                    response.getHeaders(), response.getStatusCode())))
+            .getBody());
     }
 
-    private <T> ResponseEntity<T> invokeKitAPIPost(String url, Map<String, String> requestBody, Class<T> responseType) {
-        HttpEntity<Map<String, String>> entity = new HttpEntity<>(requestBody, createHeaders());
-        ResponseEntity<T> response = restTemplate.exchange(
-            url,
-            HttpMethod.POST,
-            entity,
-            responseType
-        );
-        return response;
+    private <T> ResponseEntity<T> invokeKitAPIPost(String endpoint, String url, Map<String, ?> requestBody, Class<T> responseType) {
+        return exchange(endpoint, url, HttpMethod.POST, requestBody, responseType);
+    }
+
+    /**
+     * Makes the call once the key's rate limiter allows it, retrying 429s, 5xx responses and I/O errors
+     * with jittered exponential backoff (or Kit's Retry-After, if longer) until the retry deadline.
+     * Every call made here is safe to repeat: reads, and tagging and untagging, which Kit treats as idempotent.
+     */
+    private <T> ResponseEntity<T> exchange(String endpoint, String url, HttpMethod method, Object requestBody, Class<T> responseType) {
+        String apiKey = obtainKitApiKey();
+        HttpEntity<Object> entity = new HttpEntity<>(requestBody, createHeaders(apiKey));
+        return withRetries(endpoint, apiKey, method, url, () -> restTemplate.exchange(url, method, entity, responseType));
+    }
+
+    /**
+     * Each attempt is timed into kit.api.requests, tagged with the endpoint and the status Kit answered with
+     * (or IO_ERROR when there was no answer); time spent waiting on the rate limiter goes into kit.api.rate-limit.wait.
+     * The whole call, retries included, holds one of the key's KitCallGuard bulkhead permits, and every attempt
+     * first checks the key's circuit breaker and then reports back to it.
+     */
+    private <T> ResponseEntity<T> withRetries(String endpoint, String apiKey, HttpMethod method, String url,
+            Supplier<ResponseEntity<T>> call) {
+        String keyFingerprint = KitApiKeyContext.fingerprint(apiKey);
+        long deadline = System.nanoTime() + retryDeadline.toNanos();
+
+        callGuard.acquire(keyFingerprint, deadline);
+        try {
+            return attempt(endpoint, keyFingerprint, deadline, method, url, call);
+        } finally {
+            callGuard.release(keyFingerprint);
+        }
+    }
+
+    private <T> ResponseEntity<T> attempt(String endpoint, String keyFingerprint, long deadline, HttpMethod method,
+            String url, Supplier<ResponseEntity<T>> call) {
+        for (int attempt = 1; ; attempt++) {
+            callGuard.beforeCall(keyFingerprint);
+            long waitStart = System.nanoTime();
+            rateLimiter.acquire(keyFingerprint, deadline);
+            long callStart = System.nanoTime();
+            meterRegistry.timer("kit.api.rate-limit.wait", "endpoint", endpoint).record(callStart - waitStart, TimeUnit.NANOSECONDS);
+
+            Duration retryAfter = null;
+            RestClientException failure;
+            String status = "ERROR";
+            inFlightCalls.incrementAndGet();
+            try {
+                ResponseEntity<T> response = call.get();
+                status = String.valueOf(response.getStatusCode().value());
+                rateLimiter.onResponse(keyFingerprint, response.getHeaders());
+                callGuard.onSuccess(keyFingerprint);
+                return response;
+            } catch (HttpStatusCodeException e) {
+                status = String.valueOf(e.getStatusCode().value());
+                if (e.getStatusCode().is5xxServerError()) {
+                    callGuard.onFailure(keyFingerprint);
+                } else {
+                    callGuard.onSuccess(keyFingerprint);
+                }
+                if (e.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                    retryAfter = retryAfter(e.getResponseHeaders());
+                    rateLimiter.onThrottled(keyFingerprint, retryAfter);
+                } else if (!e.getStatusCode().is5xxServerError()) {
+                    throw e;
+                }
+                failure = e;
+            } catch (ResourceAccessException e) {
+                status = "IO_ERROR";
+                callGuard.onFailure(keyFingerprint);
+                failure = e;
+            } finally {
+                inFlightCalls.decrementAndGet();
+                requestTimer(endpoint, method, status).record(System.nanoTime() - callStart, TimeUnit.NANOSECONDS);
+            }
+
+            long backoff = backoffNanos(attempt);
+            if (retryAfter != null) {
+                backoff = Math.max(backoff, retryAfter.toNanos());
+            }
+            if (attempt >= maxAttempts || System.nanoTime() + backoff > deadline) {
+                throw failure;
+            }
+            logger.warn("Kit call {} {} failed ({}), retry {} in {} ms", method, url, failure.getMessage(),
+                attempt, TimeUnit.NANOSECONDS.toMillis(backoff));
+            Counter.builder("kit.api.retries").tag("endpoint", endpoint).tag("status", status)
+                .register(meterRegistry).increment();
+            try {
+                TimeUnit.NANOSECONDS.sleep(backoff);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+        }
+    }
+
+    private Timer requestTimer(String endpoint, HttpMethod method, String status) {
+        return Timer.builder("kit.api.requests")
+            .description("Latency of each call made to Kit, per attempt")
+            .tag("endpoint", endpoint)
+            .tag("method", method.name())
+            .tag("status", status)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    // Jittered: a random delay between half and all of the exponential backoff for this attempt
+    private long backoffNanos(int attempt) {
+        long ceiling = Math.min(maxBackoff.toNanos(), initialBackoff.toNanos() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static Duration retryAfter(HttpHeaders headers) {
+        String value = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
-    private HttpHeaders createHeaders() {
+    private HttpHeaders createHeaders(String apiKey) {
         HttpHeaders headers = new HttpHeaders();
-        headers.set("X-Kit-Api-Key", obtainKitApiKey());
+        headers.set("X-Kit-Api-Key", apiKey);
         headers.setContentType(MediaType.APPLICATION_JSON);
         return headers;
     }
@@ -0,0 +1,300 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bulkhead and circuit breaker per API key fingerprint, around every call KitApiService makes with that key.
+ *
+ * The bulkhead caps how many threads can be inside a Kit call for one key at once, counting the time spent
+ * waiting on the rate limiter and between retries, so a slow or throttled key cannot hold every request thread.
+ * A caller that finds it full waits up to max-wait and is then turned away.
+ *
+ * The breaker counts consecutive 5xx answers and I/O errors (timeouts included). At failure-threshold it opens and
+ * calls for that key fail straight away for open-for; then one trial call is let through, which closes it again
+ * on success or reopens it on failure. Any other answer, 4xx and 429 included, counts as Kit being up;
+ * 429s slow the key down through KitRateLimiter instead.
+ * Both turn callers away with KitUnavailableException. Other keys are not affected.
+ *
+ * The bulkhead counts every Kit call for the key, reads included, whichever request or job makes it.
+ * KitTaggingService's kit.tagging.max-in-flight-per-key is a tighter cap inside it, on tag calls only: those
+ * calls take permits here too, so keep it below max-concurrent-per-key and the rest stays free for
+ * subscriber reads and lookups while a large upload is being tagged.
+ *
+ * A key's state is dropped once its circuit is closed, none of its calls is in progress and it has not been
+ * used for evict-after, so the map does not keep one entry for every key ever seen. Failures counted that long
+ * ago are forgotten with it.
+ */
+@Component
+public class KitCallGuard {
+    private static final Logger logger = LoggerFactory.getLogger(KitCallGuard.class);
+
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final int maxConcurrentPerKey;
+    private final Duration maxWait;
+    private final int failureThreshold;
+    private final Duration openFor;
+    private final long evictAfterNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<String, Guard> guards = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+    private final Counter circuitRejections;
+    private final Counter bulkheadRejections;
+
+    private class Guard {
+        private final Semaphore permits = new Semaphore(maxConcurrentPerKey);
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        // when the circuit opened, or when the current half-open trial started
+        private long openedAt;
+        private boolean trialInFlight;
+        // threads between acquire and release; only changed inside the map's compute, so an entry in use is never removed
+        private int holders;
+        private volatile long lastUsed = nanoClock.getAsLong();
+    }
+
+    /**
+     * The state of one key's bulkhead and breaker, for monitoring.
+     */
+    public static class Status {
+        private final CircuitState circuit;
+        private final int consecutiveFailures;
+        private final long retryInMillis;
+        private final int callsInFlight;
+        private final int maxCalls;
+
+        Status(CircuitState circuit, int consecutiveFailures, long retryInMillis, int callsInFlight, int maxCalls) {
+            this.circuit = circuit;
+            this.consecutiveFailures = consecutiveFailures;
+            this.retryInMillis = retryInMillis;
+            this.callsInFlight = callsInFlight;
+            this.maxCalls = maxCalls;
+        }
+
+        public CircuitState getCircuit() { return circuit; }
+        public int getConsecutiveFailures() { return consecutiveFailures; }
+        public long getRetryInMillis() { return retryInMillis; }
+        public int getCallsInFlight() { return callsInFlight; }
+        public int getMaxCalls() { return maxCalls; }
+    }
+
+    @Autowired
+    public KitCallGuard(MeterRegistry meterRegistry,
+            @Value("${kit.bulkhead.max-concurrent-per-key:16}") int maxConcurrentPerKey,
+            @Value("${kit.bulkhead.max-wait:5s}") Duration maxWait,
+            @Value("${kit.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${kit.circuit.open-for:30s}") Duration openFor,
+            @Value("${kit.bulkhead.evict-after:10m}") Duration evictAfter) {
+        this(meterRegistry, maxConcurrentPerKey, maxWait, failureThreshold, openFor, evictAfter, System::nanoTime);
+    }
+
+    KitCallGuard(MeterRegistry meterRegistry, int maxConcurrentPerKey, Duration maxWait, int failureThreshold,
+            Duration openFor, Duration evictAfter, LongSupplier nanoClock) {
+        if (maxConcurrentPerKey < 1 || failureThreshold < 1) {
+            throw new IllegalArgumentException("Bulkhead and circuit breaker settings must be at least 1");
+        }
+        this.maxConcurrentPerKey = maxConcurrentPerKey;
+        this.maxWait = maxWait;
+        this.failureThreshold = failureThreshold;
+        this.openFor = openFor;
+        this.evictAfterNanos = evictAfter.toNanos();
+        this.nanoClock = nanoClock;
+        this.lastSweep = new AtomicLong(nanoClock.getAsLong());
+        this.circuitRejections = rejections(meterRegistry, "circuit_open");
+        this.bulkheadRejections = rejections(meterRegistry, "bulkhead_full");
+        Gauge.builder("kit.api.circuit.open", this, KitCallGuard::countOpen)
+            .description("API keys whose circuit breaker is open or half open")
+            .register(meterRegistry);
+        Gauge.builder("kit.api.bulkhead.in-use", this, KitCallGuard::countInUse)
+            .description("Bulkhead permits held, across all keys")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Takes a bulkhead permit for the key, waiting up to max-wait (but not past the deadline) for one to free up.
+     * Every successful call must be paired with a release.
+     */
+    public void acquire(String keyFingerprint, long deadlineNanos) {
+        long now = nanoClock.getAsLong();
+        evictIdle(now);
+        Guard guard = guards.compute(keyFingerprint, (key, existing) -> {
+            Guard held = existing != null ? existing : new Guard();
+            held.holders++;
+            return held;
+        });
+        long waitNanos = Math.min(maxWait.toNanos(), Math.max(deadlineNanos - now, 0));
+        boolean acquired = false;
+        try {
+            acquired = guard.permits.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KitUnavailableException("Interrupted while waiting for a Kit call slot");
+        } finally {
+            if (!acquired) {
+                leave(keyFingerprint, false);
+            }
+        }
+        if (!acquired) {
+            bulkheadRejections.increment();
+            throw new KitUnavailableException("Too many Kit calls in progress for this key, try again shortly");
+        }
+    }
+
+    public void release(String keyFingerprint) {
+        leave(keyFingerprint, true);
+    }
+
+    /**
+     * Checks the breaker before an attempt, failing fast while it is open. Once open-for has passed,
+     * the first caller becomes the half-open trial and the others keep being turned away until it reports back,
+     * or until open-for has passed again (the trial may have ended without reaching Kit).
+     */
+    public void beforeCall(String keyFingerprint) {
+        Guard guard = guard(keyFingerprint);
+        synchronized (guard) {
+            if (guard.state == CircuitState.CLOSED) {
+                return;
+            }
+            long now = nanoClock.getAsLong();
+            boolean waitedOut = now - guard.openedAt >= openFor.toNanos();
+            if (guard.state == CircuitState.OPEN && waitedOut) {
+                guard.state = CircuitState.HALF_OPEN;
+                guard.trialInFlight = false;
+            }
+            if (guard.state == CircuitState.HALF_OPEN && (!guard.trialInFlight || waitedOut)) {
+                guard.trialInFlight = true;
+                guard.openedAt = now;
+                return;
+            }
+        }
+        circuitRejections.increment();
+        throw new KitUnavailableException("Kit is failing for this key, calls are paused for up to "
+            + openFor.toSeconds() + "s");
+    }
+
+    /**
+     * Kit answered the attempt with anything but a 5xx.
+     */
+    public void onSuccess(String keyFingerprint) {
+        Guard guard = guard(keyFingerprint);
+        synchronized (guard) {
+            if (guard.state != CircuitState.CLOSED) {
+                logger.info("Kit recovered for key {}, closing its circuit", keyFingerprint);
+            }
+            guard.state = CircuitState.CLOSED;
+            guard.consecutiveFailures = 0;
+            guard.trialInFlight = false;
+        }
+    }
+
+    /**
+     * The attempt got a 5xx or no answer at all.
+     */
+    public void onFailure(String keyFingerprint) {
+        Guard guard = guard(keyFingerprint);
+        synchronized (guard) {
+            guard.consecutiveFailures++;
+            if (guard.state == CircuitState.HALF_OPEN
+                    || (guard.state == CircuitState.CLOSED && guard.consecutiveFailures >= failureThreshold)) {
+                logger.warn("Kit failed {} times in a row for key {}, opening its circuit for {}s",
+                    guard.consecutiveFailures, keyFingerprint, openFor.toSeconds());
+                guard.state = CircuitState.OPEN;
+                guard.openedAt = nanoClock.getAsLong();
+                guard.trialInFlight = false;
+            }
+        }
+    }
+
+    /**
+     * Current bulkhead and breaker state for the key.
+     */
+    public Status status(String keyFingerprint) {
+        Guard guard = guards.get(keyFingerprint);
+        if (guard == null) {
+            return new Status(CircuitState.CLOSED, 0, 0, 0, maxConcurrentPerKey);
+        }
+        synchronized (guard) {
+            long retryIn = guard.state == CircuitState.OPEN
+                ? Math.max(0, openFor.toNanos() - (nanoClock.getAsLong() - guard.openedAt)) : 0;
+            return new Status(guard.state, guard.consecutiveFailures, TimeUnit.NANOSECONDS.toMillis(retryIn),
+                maxConcurrentPerKey - guard.permits.availablePermits(), maxConcurrentPerKey);
+        }
+    }
+
+    private Guard guard(String keyFingerprint) {
+        return guards.computeIfAbsent(keyFingerprint, key -> new Guard());
+    }
+
+    private void leave(String keyFingerprint, boolean releasePermit) {
+        long now = nanoClock.getAsLong();
+        guards.computeIfPresent(keyFingerprint, (key, guard) -> {
+            if (releasePermit) {
+                guard.permits.release();
+            }
+            guard.holders--;
+            guard.lastUsed = now;
+            return guard;
+        });
+    }
+
+    /**
+     * At most once per evict-after, drops the keys that have been idle with a closed circuit for that long.
+     */
+    private void evictIdle(long now) {
+        long last = lastSweep.get();
+        if (now - last < evictAfterNanos || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (String keyFingerprint : guards.keySet()) {
+            guards.computeIfPresent(keyFingerprint, (key, guard) -> {
+                synchronized (guard) {
+                    boolean idle = guard.holders == 0 && guard.state == CircuitState.CLOSED
+                        && now - guard.lastUsed >= evictAfterNanos;
+                    return idle ? null : guard;
+                }
+            });
+        }
+    }
+
+    private int countOpen() {
+        int open = 0;
+        for (Guard guard : guards.values()) {
+            synchronized (guard) {
+                if (guard.state != CircuitState.CLOSED) {
+                    open++;
+                }
+            }
+        }
+        return open;
+    }
+
+    private int countInUse() {
+        int inUse = 0;
+        for (Guard guard : guards.values()) {
+            inUse += maxConcurrentPerKey - guard.permits.availablePermits();
+        }
+        return inUse;
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("kit.api.rejected")
+            .description("Calls to Kit turned away by the per-key bulkhead or circuit breaker")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.kitApp.service;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown when a call to Kit cannot be made within its deadline because of the key's rate limit.
+ */
+public class KitRateLimitException extends RestClientException {
+
+    public KitRateLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per API key fingerprint, shared by every call KitApiService makes with that key.
+ *
+ * Kit allows a fixed number of requests per rolling minute per key. The bucket starts at the configured
+ * rate and then follows what Kit reports: the X-RateLimit-* headers raise or lower the ceiling and cap the
+ * tokens at what Kit says is left, a 429 halves the rate and pauses the key for Retry-After, and every
+ * successful call creeps the rate back up towards the ceiling.
+ *
+ * A key's bucket is dropped once it has refilled, is not paused and has not been used for evict-after, so the
+ * map does not keep one entry for every key ever seen (as KitCallGuard does for its guards). The key then starts
+ * again from the configured rate.
+ */
+@Component
+public class KitRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(KitRateLimiter.class);
+
+    private static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    private static final String RESET_HEADER = "X-RateLimit-Reset";
+
+    // Never throttle a key below this fraction of its ceiling
+    private static final double MIN_RATE_FRACTION = 0.1;
+    // Share of the ceiling regained per successful call after a 429
+    private static final double RECOVERY_STEP = 0.02;
+
+    private final double defaultPerSecond;
+    private final int burst;
+    private final long evictAfterNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+
+    private class Bucket {
+        private double ceilingPerSecond = defaultPerSecond;
+        private double ratePerSecond = defaultPerSecond;
+        private double tokens = burst;
+        private long lastRefill = nanoClock.getAsLong();
+        private long pausedUntil = lastRefill;
+        private long lastUsed = lastRefill;
+        // set once the bucket is out of the map; a caller still holding it looks the key up again
+        private boolean evicted;
+
+        private void refill(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * ratePerSecond);
+                lastRefill = now;
+            }
+        }
+    }
+
+    @Autowired
+    public KitRateLimiter(@Value("${kit.rate-limit.requests-per-minute:120}") int requestsPerMinute,
+            @Value("${kit.rate-limit.burst:20}") int burst,
+            @Value("${kit.rate-limit.evict-after:10m}") Duration evictAfter) {
+        this(requestsPerMinute, burst, evictAfter, System::nanoTime);
+    }
+
+    KitRateLimiter(int requestsPerMinute, int burst, Duration evictAfter, LongSupplier nanoClock) {
+        if (requestsPerMinute < 1 || burst < 1) {
+            throw new IllegalArgumentException("Rate limit settings must be at least 1");
+        }
+        this.defaultPerSecond = requestsPerMinute / 60.0;
+        this.burst = burst;
+        this.evictAfterNanos = evictAfter.toNanos();
+        this.nanoClock = nanoClock;
+        this.lastSweep = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Waits until the key may make another call. Gives up with KitRateLimitException, without using
+     * a token, if that would take longer than the time left before the deadline.
+     */
+    public void acquire(String keyFingerprint, long deadlineNanos) {
+        long waitNanos = reserve(keyFingerprint, deadlineNanos);
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KitRateLimitException("Interrupted while waiting for Kit rate limit");
+            }
+        }
+    }
+
+    /**
+     * Takes a token, going into debt if none is left, and returns how long the caller must wait before using it.
+     */
+    long reserve(String keyFingerprint, long deadlineNanos) {
+        evictIdle(nanoClock.getAsLong());
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(keyFingerprint, key -> new Bucket());
+            synchronized (bucket) {
+                if (bucket.evicted) {
+                    continue;
+                }
+                long now = nanoClock.getAsLong();
+                bucket.lastUsed = now;
+                bucket.refill(now);
+                double debt = 1 - bucket.tokens;
+                long waitNanos = debt > 0 ? (long) (debt / bucket.ratePerSecond * 1e9) : 0;
+                waitNanos = Math.max(waitNanos, bucket.pausedUntil - now);
+                if (now + waitNanos > deadlineNanos) {
+                    throw new KitRateLimitException("Kit rate limit leaves no capacity for this key before the deadline");
+                }
+                bucket.tokens -= 1;
+                return waitNanos;
+            }
+        }
+    }
+
+    /**
+     * Adjusts the key's bucket to the rate limit headers on a Kit response, if there are any.
+     */
+    public void onResponse(String keyFingerprint, HttpHeaders headers) {
+        Bucket bucket = buckets.get(keyFingerprint);
+        if (bucket == null || headers == null) {
+            return;
+        }
+        Long limit = longHeader(headers, LIMIT_HEADER);
+        Long remaining = longHeader(headers, REMAINING_HEADER);
+        Long reset = longHeader(headers, RESET_HEADER);
+        synchronized (bucket) {
+            long now = nanoClock.getAsLong();
+            if (limit != null && limit > 0) {
+                // Kit's window is a rolling minute
+                bucket.ceilingPerSecond = limit / 60.0;
+                bucket.ratePerSecond = Math.min(bucket.ratePerSecond, bucket.ceilingPerSecond);
+            }
+            if (remaining != null) {
+                bucket.tokens = Math.min(bucket.tokens, remaining);
+                if (remaining == 0 && reset != null) {
+                    bucket.pausedUntil = Math.max(bucket.pausedUntil, now + resetDelayNanos(reset));
+                }
+            }
+            // additive increase after a successful call
+            bucket.ratePerSecond = Math.min(bucket.ceilingPerSecond,
+                bucket.ratePerSecond + bucket.ceilingPerSecond * RECOVERY_STEP);
+        }
+    }
+
+    /**
+     * Called when Kit answers 429. Halves the key's rate and pauses it for retryAfter, if Kit sent one.
+     */
+    public void onThrottled(String keyFingerprint, Duration retryAfter) {
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(keyFingerprint, key -> new Bucket());
+            synchronized (bucket) {
+                if (bucket.evicted) {
+                    continue;
+                }
+                long now = nanoClock.getAsLong();
+                bucket.lastUsed = now;
+                bucket.ratePerSecond = Math.max(bucket.ceilingPerSecond * MIN_RATE_FRACTION, bucket.ratePerSecond / 2);
+                bucket.tokens = Math.min(bucket.tokens, 0);
+                if (retryAfter != null) {
+                    bucket.pausedUntil = Math.max(bucket.pausedUntil, now + retryAfter.toNanos());
+                }
+                logger.warn("Kit throttled key {}, slowing to {} requests/minute", keyFingerprint,
+                    Math.round(bucket.ratePerSecond * 60));
+                return;
+            }
+        }
+    }
+
+    /**
+     * At most once per evict-after, drops the buckets that are full, not paused and unused for that long.
+     */
+    private void evictIdle(long now) {
+        long last = lastSweep.get();
+        if (now - last < evictAfterNanos || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        for (String keyFingerprint : buckets.keySet()) {
+            buckets.computeIfPresent(keyFingerprint, (key, bucket) -> {
+                synchronized (bucket) {
+                    bucket.refill(now);
+                    bucket.evicted = bucket.tokens >= burst && bucket.pausedUntil <= now
+                        && now - bucket.lastUsed >= evictAfterNanos;
+                    return bucket.evicted ? null : bucket;
+                }
+            });
+        }
+    }
+
+    /**
+     * Current allowed rate for the key in requests per minute, for logging and monitoring.
+     */
+    public double currentRatePerMinute(String keyFingerprint) {
+        Bucket bucket = buckets.get(keyFingerprint);
+        if (bucket == null) {
+            return defaultPerSecond * 60;
+        }
+        synchronized (bucket) {
+            return bucket.ratePerSecond * 60;
+        }
+    }
+
+    // X-RateLimit-Reset may be seconds until the reset or an epoch timestamp
+    private long resetDelayNanos(long reset) {
+        long seconds = reset > 1_000_000_000L ? reset - System.currentTimeMillis() / 1000 : reset;
+        return TimeUnit.SECONDS.toNanos(Math.max(seconds, 0));
+    }
+
+    private static Long longHeader(HttpHeaders headers, String name) {
+        String value = headers.getFirst(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.kitApp.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.kitApp.context.KitApiKeyContext;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the work of long controller endpoints (whole subscriber loads, tagging runs) off the servlet threads.
+ *
+ * The endpoint returns the CompletableFuture straight away and Spring MVC completes the request asynchronously,
+ * so Tomcat's threads stay free for quick requests like /api/tags however many big operations are running.
+ * The pool is sized for how much Kit work the instance should run at once rather than for Tomcat; once all its
+ * threads are busy and its queue is full, further work is refused with RejectedExecutionException.
+ *
+ * The API key is taken from the submitting request thread and handed to the task explicitly (see
+ * KitApiKeyContext.wrap), so the task sees the key of the request that submitted it whichever thread runs it.
+ */
+@Component
+public class KitRequestExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public KitRequestExecutor(MeterRegistry meterRegistry,
+            @Value("${kit.requests.async-threads:64}") int threads,
+            @Value("${kit.requests.queue-capacity:500}") int queueCapacity) {
+        this(threads, queueCapacity);
+        Gauge.builder("kit.requests.async.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Endpoint tasks running off the servlet threads")
+            .register(meterRegistry);
+        Gauge.builder("kit.requests.async.queued", executor, pool -> pool.getQueue().size())
+            .description("Endpoint tasks waiting for a thread")
+            .register(meterRegistry);
+    }
+
+    public KitRequestExecutor(int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Async request settings must be at least 1");
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), requestThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the work on the pool with the current request's API key, completing the future with its result
+     * or its exception. When the pool is saturated the future fails with RejectedExecutionException.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        String apiKey = KitApiKeyContext.getApiKey();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                future.complete(work.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        try {
+            executor.execute(KitApiKeyContext.wrap(apiKey, task));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static ThreadFactory requestThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "kit-requests-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
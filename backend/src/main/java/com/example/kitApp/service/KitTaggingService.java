@@ -0,0 +1,414 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.KitApiBulkTagResponse;
+import com.example.kitApp.model.TagOutcome;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Runs the tag (and untag) calls against Kit concurrently.
+ * Kit has no bulk tagging by email, so unless bulk tagging by subscriber ID is enabled every address is its
+ * own POST, but instead of making them one after another on the request thread they are spread over a
+ * shared worker pool.
+ * The number of calls in flight for any single API key is capped, so one large upload cannot
+ * monopolise the pool or blow through that account's rate limit. Each of those calls also holds one of the key's
+ * KitCallGuard bulkhead permits, which cap all of the key's Kit calls, reads included; with this cap below that one,
+ * tagging cannot take every permit and starve the key's subscriber reads.
+ * Emails TagMembershipCache already knows to have the tag are answered as already tagged without calling Kit.
+ * With kit.tagging.skip-unknown, emails that are not in the account's subscriber list (see SubscriberDiff)
+ * fail straight away too, instead of each costing a call that Kit would answer with a 404.
+ */
+@Service
+public class KitTaggingService {
+    private static final Logger logger = LoggerFactory.getLogger(KitTaggingService.class);
+
+    // Kit processes bulk requests of up to 100 taggings synchronously
+    private static final int MAX_BULK_BATCH_SIZE = 100;
+
+    private final KitApiService kitApiService;
+    private final SubscriberSnapshotCache subscriberSnapshotCache;
+    private final TagMembershipCache tagMembershipCache;
+    private final ExecutorService workers;
+    private final int maxInFlightPerKey;
+    private final boolean bulkEnabled;
+    private final int bulkBatchSize;
+    private final boolean skipUnknown;
+
+    // One semaphore per API key fingerprint, shared by every request using that key
+    private final ConcurrentHashMap<String, Semaphore> inFlightPermits = new ConcurrentHashMap<>();
+    private final Map<TagOutcome.Result, Counter> outcomeCounters = new EnumMap<>(TagOutcome.Result.class);
+    private final Counter knownTaggedCounter;
+    private final Counter unknownSkippedCounter;
+
+    @Autowired
+    public KitTaggingService(KitApiService kitApiService, SubscriberSnapshotCache subscriberSnapshotCache,
+            TagMembershipCache tagMembershipCache, MeterRegistry meterRegistry,
+            @Value("${kit.tagging.max-in-flight-per-key:8}") int maxInFlightPerKey,
+            @Value("${kit.tagging.worker-threads:32}") int workerThreads,
+            @Value("${kit.tagging.bulk.enabled:false}") boolean bulkEnabled,
+            @Value("${kit.tagging.bulk.batch-size:100}") int bulkBatchSize,
+            @Value("${kit.tagging.skip-unknown:false}") boolean skipUnknown) {
+        if (maxInFlightPerKey < 1 || workerThreads < 1) {
+            throw new IllegalArgumentException("Tagging concurrency settings must be at least 1");
+        }
+        if (bulkBatchSize < 1 || bulkBatchSize > MAX_BULK_BATCH_SIZE) {
+            throw new IllegalArgumentException("Bulk batch size must be between 1 and " + MAX_BULK_BATCH_SIZE);
+        }
+        this.kitApiService = kitApiService;
+        this.subscriberSnapshotCache = subscriberSnapshotCache;
+        this.tagMembershipCache = tagMembershipCache;
+        this.maxInFlightPerKey = maxInFlightPerKey;
+        this.bulkEnabled = bulkEnabled;
+        this.bulkBatchSize = bulkBatchSize;
+        this.skipUnknown = skipUnknown;
+        this.workers = Executors.newFixedThreadPool(workerThreads, workerThreadFactory());
+
+        for (TagOutcome.Result result : TagOutcome.Result.values()) {
+            outcomeCounters.put(result, Counter.builder("kit.tagging.outcomes")
+                .description("Emails processed by the tagging pipeline, by result")
+                .tag("result", result.name())
+                .register(meterRegistry));
+        }
+        knownTaggedCounter = Counter.builder("kit.tagging.known-tagged")
+            .description("Emails answered as already tagged from TagMembershipCache, without a call to Kit")
+            .register(meterRegistry);
+        unknownSkippedCounter = Counter.builder("kit.tagging.unknown-skipped")
+            .description("Emails not sent to Kit because they are not in the account's subscriber list")
+            .register(meterRegistry);
+        Gauge.builder("kit.tagging.in-flight", this, KitTaggingService::inFlightCount)
+            .description("Tag calls holding a per-key permit, across all keys")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Tags every email with the given API key, handing each outcome to the sink as soon as it completes,
+     * together with the position of its email in the input. The sink is called from worker threads and
+     * must be thread safe. Returns once every email has been processed.
+     *
+     * When bulk tagging is enabled, emails found in the account's subscriber index are tagged by ID in
+     * batches; the rest still go through the per-email endpoint, which never creates new subscribers.
+     */
+    public void tagAll(String apiKey, String tagId, Iterable<String> emails, ObjIntConsumer<TagOutcome> sink) {
+        applyAll(apiKey, List.of(Operation.tag(tagId)), emails, (operation, outcome, position) -> sink.accept(outcome, position));
+    }
+
+    /**
+     * Applies several tag and untag operations to every email in one pass over the input: the subscriber
+     * lookups behind bulk tagging and skip-unknown are done once for all operations, and each email is
+     * checked against them once. Each outcome goes to the sink with the index of its operation and the
+     * position of its email. The caller deduplicates emails and operations beforehand.
+     * Untagging is always one call per email, since Kit's bulk endpoint only adds tags.
+     */
+    public void applyAll(String apiKey, List<Operation> operations, Iterable<String> emails, OperationSink sink) {
+        if (apiKey == null) {
+            throw new IllegalStateException("API Key not available for this request.");
+        }
+        OperationSink counted = (operation, outcome, position) -> {
+            outcomeCounters.get(outcome.getResult()).increment();
+            String tagId = operations.get(operation).getTagId();
+            if (outcome.getResult() == TagOutcome.Result.UNTAGGED) {
+                tagMembershipCache.forget(apiKey, tagId, outcome.getEmail());
+            } else if (outcome.getResult() != TagOutcome.Result.FAILED) {
+                tagMembershipCache.record(apiKey, tagId, outcome.getEmail());
+            }
+            sink.accept(operation, outcome, position);
+        };
+        Semaphore permits = inFlightPermits.computeIfAbsent(
+            KitApiKeyContext.fingerprint(apiKey), key -> new Semaphore(maxInFlightPerKey));
+        Map<String, Long> subscriberIds = bulkEnabled ? resolveSubscriberIds(apiKey) : Collections.emptyMap();
+        Set<String> subscribers = skipUnknown ? resolveSubscribers(apiKey) : null;
+        List<Set<String>> knownTagged = new ArrayList<>(operations.size());
+        Batch[] batches = new Batch[operations.size()];
+        for (Operation operation : operations) {
+            knownTagged.add(operation.isUntag() ? Collections.emptySet() : resolveKnownTagged(apiKey, operation.getTagId()));
+        }
+
+        // The phaser tracks outstanding calls; the submitting thread is its first party
+        Phaser pending = new Phaser(1);
+        int index = 0;
+        try {
+            for (String email : emails) {
+                final int position = index++;
+                boolean unknown = subscribers != null && email != null
+                    && !subscribers.contains(SubscriberSnapshotCache.normalise(email));
+                Long subscriberId = lookup(subscriberIds, email);
+                for (int op = 0; op < operations.size(); op++) {
+                    final int operation = op;
+                    String tagId = operations.get(op).getTagId();
+                    if (TagMembershipCache.contains(knownTagged.get(op), email)) {
+                        knownTaggedCounter.increment();
+                        counted.accept(operation, new TagOutcome(email, TagOutcome.Result.ALREADY_TAGGED, 200,
+                            "Known to be tagged, not sent to Kit"), position);
+                        continue;
+                    }
+                    if (unknown) {
+                        unknownSkippedCounter.increment();
+                        counted.accept(operation, new TagOutcome(email, TagOutcome.Result.FAILED, 404,
+                            "Not a subscriber, not sent to Kit"), position);
+                        continue;
+                    }
+                    if (operations.get(op).isUntag()) {
+                        submit(apiKey, permits, pending, () -> counted.accept(operation, untagOne(tagId, email), position));
+                        continue;
+                    }
+                    if (subscriberId == null) {
+                        submit(apiKey, permits, pending, () -> counted.accept(operation, tagOne(tagId, email), position));
+                        continue;
+                    }
+                    if (batches[op] == null) {
+                        batches[op] = new Batch(bulkBatchSize);
+                    }
+                    batches[op].add(email, subscriberId, position);
+                    if (batches[op].isFull()) {
+                        Batch full = batches[op];
+                        submit(apiKey, permits, pending,
+                            () -> tagBatch(tagId, full, (outcome, at) -> counted.accept(operation, outcome, at)));
+                        batches[op] = null;
+                    }
+                }
+            }
+            for (int op = 0; op < operations.size(); op++) {
+                if (batches[op] != null) {
+                    final int operation = op;
+                    Batch last = batches[op];
+                    submit(apiKey, permits, pending, () -> tagBatch(operations.get(operation).getTagId(), last,
+                        (outcome, at) -> counted.accept(operation, outcome, at)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while tagging subscribers", e);
+        } finally {
+            // Always wait for calls already started so no worker writes into the sink after we return
+            pending.arriveAndAwaitAdvance();
+        }
+    }
+
+    /**
+     * Runs one upstream call on the worker pool once a per-key permit is free.
+     */
+    private void submit(String apiKey, Semaphore permits, Phaser pending, Runnable work) throws InterruptedException {
+        permits.acquire();
+        pending.register();
+        Runnable task = () -> {
+            try {
+                work.run();
+            } finally {
+                permits.release();
+                pending.arriveAndDeregister();
+            }
+        };
+        try {
+            workers.execute(KitApiKeyContext.wrap(apiKey, task));
+        } catch (RuntimeException e) {
+            permits.release();
+            pending.arriveAndDeregister();
+            throw e;
+        }
+    }
+
+    private TagOutcome tagOne(String tagId, String email) {
+        try {
+            ResponseEntity<String> response = kitApiService.tagSubscriber(tagId, email);
+            return TagOutcome.fromResponse(email, response);
+        } catch (Exception e) {
+            logger.error("Error tagging subscriber {}: {}", email, e.getMessage());
+            return TagOutcome.failed(email, e.getMessage());
+        }
+    }
+
+    private TagOutcome untagOne(String tagId, String email) {
+        try {
+            ResponseEntity<String> response = kitApiService.untagSubscriber(tagId, email);
+            return new TagOutcome(email, TagOutcome.Result.UNTAGGED, response.getStatusCode().value(), response.getBody());
+        } catch (Exception e) {
+            logger.error("Error untagging subscriber {}: {}", email, e.getMessage());
+            return TagOutcome.failed(email, e.getMessage());
+        }
+    }
+
+    /**
+     * Tags a batch of known subscribers with one bulk call. The bulk endpoint does not say whether a
+     * subscriber already had the tag, so every subscriber not listed as a failure counts as tagged.
+     * If the key is not allowed to use the bulk endpoint, the batch falls back to per-email calls.
+     */
+    private void tagBatch(String tagId, Batch batch, ObjIntConsumer<TagOutcome> sink) {
+        ResponseEntity<KitApiBulkTagResponse> response;
+        try {
+            response = kitApiService.bulkTagSubscribers(tagId, batch.subscriberIds);
+        } catch (HttpClientErrorException.Unauthorized | HttpClientErrorException.Forbidden e) {
+            logger.warn("Bulk tagging not available for this key ({}), tagging {} subscribers one by one",
+                e.getStatusCode(), batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                sink.accept(tagOne(tagId, batch.emails.get(i)), batch.positions[i]);
+            }
+            return;
+        } catch (Exception e) {
+            logger.error("Error bulk tagging {} subscribers: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                sink.accept(TagOutcome.failed(batch.emails.get(i), e.getMessage()), batch.positions[i]);
+            }
+            return;
+        }
+
+        Map<Long, String> failures = new HashMap<>();
+        KitApiBulkTagResponse body = response.getBody();
+        if (body != null) {
+            for (KitApiBulkTagResponse.Failure failure : body.getFailures()) {
+                if (failure.getTagging() != null) {
+                    failures.put(failure.getTagging().getSubscriberId(), String.valueOf(failure.getErrors()));
+                }
+            }
+        }
+        int status = response.getStatusCode().value();
+        for (int i = 0; i < batch.size(); i++) {
+            String email = batch.emails.get(i);
+            String error = failures.get(batch.subscriberIds.get(i));
+            TagOutcome outcome = error != null
+                ? TagOutcome.failed(email, error)
+                : new TagOutcome(email, TagOutcome.Result.TAGGED, status, null);
+            sink.accept(outcome, batch.positions[i]);
+        }
+    }
+
+    private Map<String, Long> resolveSubscriberIds(String apiKey) {
+        try {
+            Map<String, Long> index = KitApiKeyContext.wrap(apiKey,
+                () -> subscriberSnapshotCache.getSubscriberIds(apiKey)).call();
+            return index != null ? index : Collections.emptyMap();
+        } catch (Exception e) {
+            logger.warn("Could not load subscriber IDs, tagging by email instead: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    // null when the list cannot be loaded, in which case every email is sent to Kit
+    private Set<String> resolveSubscribers(String apiKey) {
+        try {
+            return KitApiKeyContext.wrap(apiKey, () -> subscriberSnapshotCache.getSubscriberEmailSet(apiKey)).call();
+        } catch (Exception e) {
+            logger.warn("Could not load the subscriber list, sending every email to Kit: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Set<String> resolveKnownTagged(String apiKey, String tagId) {
+        try {
+            return KitApiKeyContext.wrap(apiKey, () -> tagMembershipCache.knownTagged(apiKey, tagId)).call();
+        } catch (Exception e) {
+            logger.warn("Could not look up known taggings, sending every email to Kit: {}", e.getMessage());
+            return Collections.emptySet();
+        }
+    }
+
+    private static Long lookup(Map<String, Long> subscriberIds, String email) {
+        if (subscriberIds.isEmpty() || email == null) {
+            return null;
+        }
+        Long id = subscriberIds.get(email);
+        return id != null ? id : subscriberIds.get(SubscriberSnapshotCache.normalise(email));
+    }
+
+    /**
+     * Adding or removing one tag, as part of applyAll.
+     */
+    public static class Operation {
+        private final String tagId;
+        private final boolean untag;
+
+        private Operation(String tagId, boolean untag) {
+            this.tagId = tagId;
+            this.untag = untag;
+        }
+
+        public static Operation tag(String tagId) { return new Operation(tagId, false); }
+        public static Operation untag(String tagId) { return new Operation(tagId, true); }
+
+        public String getTagId() { return tagId; }
+        public boolean isUntag() { return untag; }
+    }
+
+    /**
+     * Receives the outcomes of applyAll, with the index of the operation and the input position of the email.
+     */
+    @FunctionalInterface
+    public interface OperationSink {
+        void accept(int operation, TagOutcome outcome, int position);
+    }
+
+    /**
+     * Subscribers waiting to be sent in one bulk call, with their positions in the input.
+     */
+    private static class Batch {
+        private final List<String> emails;
+        private final List<Long> subscriberIds;
+        private final int[] positions;
+
+        Batch(int capacity) {
+            this.emails = new ArrayList<>(capacity);
+            this.subscriberIds = new ArrayList<>(capacity);
+            this.positions = new int[capacity];
+        }
+
+        void add(String email, Long subscriberId, int position) {
+            positions[emails.size()] = position;
+            emails.add(email);
+            subscriberIds.add(subscriberId);
+        }
+
+        int size() { return emails.size(); }
+        boolean isEmpty() { return emails.isEmpty(); }
+        boolean isFull() { return emails.size() == positions.length; }
+    }
+
+    private int inFlightCount() {
+        int inFlight = 0;
+        for (Semaphore permits : inFlightPermits.values()) {
+            inFlight += maxInFlightPerKey - permits.availablePermits();
+        }
+        return inFlight;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "kit-tagging-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
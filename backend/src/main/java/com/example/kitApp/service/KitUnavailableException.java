@@ -0,0 +1,13 @@
+package com.example.kitApp.service;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown without calling Kit when the key's circuit breaker is open or its bulkhead is full (see KitCallGuard).
+ */
+public class KitUnavailableException extends RestClientException {
+
+    public KitUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.kitApp.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: while a call for a key is in flight, other callers with the same
+ * key wait for it and get its result (or its exception) instead of making their own.
+ * Nothing is cached once the call completes. Results are shared between callers, so they must be treated as read-only.
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            try {
+                return (T) leader.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        try {
+            T result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Number of distinct calls currently in flight.
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
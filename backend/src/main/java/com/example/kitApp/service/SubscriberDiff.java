@@ -0,0 +1,45 @@
+package com.example.kitApp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits a list of emails against an account's subscribers into known subscribers, unknown addresses and
+ * repeats of an address earlier in the list. Emails are compared trimmed and lower-cased, and returned that way.
+ * Blank entries are ignored. Known and unknown emails are kept in EmailArenas, which also do the deduplication.
+ */
+public class SubscriberDiff {
+
+    private final EmailArena known = new EmailArena();
+    private final EmailArena unknown = new EmailArena();
+    private final List<String> duplicates = new ArrayList<>();
+
+    private SubscriberDiff() {
+    }
+
+    /**
+     * Diffs the emails against a set of normalised subscriber emails, e.g. from SubscriberSnapshotCache.getSubscriberEmailSet.
+     */
+    public static SubscriberDiff of(Iterable<String> emails, Set<String> subscribers) {
+        SubscriberDiff diff = new SubscriberDiff();
+        for (String email : emails) {
+            if (email == null || email.isBlank()) {
+                continue;
+            }
+            String normalised = SubscriberSnapshotCache.normalise(email);
+            if (diff.known.contains(normalised) || diff.unknown.contains(normalised)) {
+                diff.duplicates.add(normalised);
+            } else if (subscribers.contains(normalised)) {
+                diff.known.add(normalised);
+            } else {
+                diff.unknown.add(normalised);
+            }
+        }
+        return diff;
+    }
+
+    public List<String> getKnown() { return known.asList(); }
+    public List<String> getUnknown() { return unknown.asList(); }
+    public List<String> getDuplicates() { return duplicates; }
+}
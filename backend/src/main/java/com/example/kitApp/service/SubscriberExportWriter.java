@@ -0,0 +1,218 @@
+package com.example.kitApp.service;
+
+import com.example.kitApp.model.SubscriberPage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes subscriber pages to a gzip-compressed CSV or NDJSON export, one page at a time.
+ *
+ * Rows go through a fixed 64KB character buffer into a gzip stream with a buffer of the same size, and each page
+ * is sync-flushed to the client once written, so the memory used stays the same however many pages follow.
+ * A CSV export starts with a header row naming the columns; NDJSON has one object per subscriber.
+ */
+public class SubscriberExportWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public enum Format {
+        CSV("csv", "subscribers.csv.gz"), NDJSON("ndjson", "subscribers.ndjson.gz");
+
+        private final String name;
+        private final String fileName;
+
+        Format(String name, String fileName) {
+            this.name = name;
+            this.fileName = fileName;
+        }
+
+        public String getFileName() { return fileName; }
+
+        /**
+         * Parses a request parameter (csv or ndjson, in any case).
+         */
+        public static Format parse(String value) {
+            for (Format format : values()) {
+                if (format.name.equalsIgnoreCase(value.trim())) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("format must be csv or ndjson");
+        }
+    }
+
+    public enum Column {
+        EMAIL("email"), ID("id"), STATE("state"), CREATED_AT("created_at");
+
+        private final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        /**
+         * True if the column is only on pages fetched with details (see KitApiService.fetchSubscriberDetails).
+         */
+        public boolean needsDetails() {
+            return this == STATE || this == CREATED_AT;
+        }
+
+        /**
+         * Parses a comma-separated request parameter such as "email,id,state", keeping the given order.
+         */
+        public static List<Column> parseList(String value) {
+            List<Column> columns = new ArrayList<>();
+            for (String part : value.split(",")) {
+                String name = part.trim().toLowerCase(Locale.ROOT);
+                if (name.isEmpty()) {
+                    continue;
+                }
+                Column column = null;
+                for (Column candidate : values()) {
+                    if (candidate.name.equals(name)) {
+                        column = candidate;
+                    }
+                }
+                if (column == null) {
+                    throw new IllegalArgumentException("columns must be taken from email, id, state and created_at");
+                }
+                if (!columns.contains(column)) {
+                    columns.add(column);
+                }
+            }
+            if (columns.isEmpty()) {
+                throw new IllegalArgumentException("columns must name at least one column");
+            }
+            return columns;
+        }
+    }
+
+    private final GZIPOutputStream gzip;
+    private final Writer writer;
+    private final JsonGenerator json;
+    private final Format format;
+    private final List<Column> columns;
+    private int total;
+
+    public SubscriberExportWriter(OutputStream outputStream, Format format, List<Column> columns) throws IOException {
+        this.gzip = new GZIPOutputStream(outputStream, BUFFER_SIZE, true);
+        this.writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.format = format;
+        this.columns = List.copyOf(columns);
+        if (format == Format.NDJSON) {
+            json = JSON_FACTORY.createGenerator(writer);
+            json.setRootValueSeparator(null);
+        } else {
+            json = null;
+            for (int c = 0; c < this.columns.size(); c++) {
+                if (c > 0) {
+                    writer.write(',');
+                }
+                writer.write(this.columns.get(c).getName());
+            }
+            writer.write("\r\n");
+        }
+    }
+
+    /**
+     * Writes every subscriber on the page and flushes the page through to the client.
+     */
+    public void writePage(SubscriberPage page) throws IOException {
+        for (int i = 0; i < page.size(); i++) {
+            if (json != null) {
+                writeJson(page, i);
+            } else {
+                writeCsv(page, i);
+            }
+        }
+        if (json != null) {
+            json.flush();
+        }
+        writer.flush();
+        total += page.size();
+    }
+
+    public int getTotal() { return total; }
+
+    /**
+     * Finishes the gzip stream. Does not close the underlying output stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (json != null) {
+            json.flush();
+        }
+        writer.flush();
+        gzip.finish();
+    }
+
+    private void writeCsv(SubscriberPage page, int i) throws IOException {
+        for (int c = 0; c < columns.size(); c++) {
+            if (c > 0) {
+                writer.write(',');
+            }
+            Column column = columns.get(c);
+            if (column == Column.ID) {
+                writer.write(Long.toString(page.getId(i)));
+            } else {
+                writeCsvField(text(column, page, i));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeCsvField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\r' || ch == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private void writeJson(SubscriberPage page, int i) throws IOException {
+        json.writeStartObject();
+        for (Column column : columns) {
+            if (column == Column.ID) {
+                json.writeNumberField(column.getName(), page.getId(i));
+            } else {
+                json.writeStringField(column.getName(), text(column, page, i));
+            }
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static String text(Column column, SubscriberPage page, int i) {
+        return switch (column) {
+            case EMAIL -> page.getEmail(i);
+            case STATE -> page.getState(i);
+            case CREATED_AT -> page.getCreatedAt(i);
+            case ID -> Long.toString(page.getId(i));
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.kitApp.service;
+
+import com.example.kitApp.model.SubscriberDetailSink;
+import com.example.kitApp.model.SubscriberPage;
+import com.example.kitApp.model.SubscriberSink;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a Kit subscriber page token by token instead of binding it to KitApiSubscribersResponse.
+ *
+ * Only each subscriber's id, email_address and state (plus created_at when details are asked for), and the page's
+ * end_cursor and has_next_page, are read;
+ * everything else is skipped without being materialised. Subscribers go straight to the sink, so a page costs
+ * one String per subscriber rather than a Subscriber object plus copies of its email.
+ */
+public final class SubscriberPageParser {
+
+    // Thread-safe once configured, and creating parsers from a shared factory reuses its buffers and symbol tables
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private SubscriberPageParser() {}
+
+    /**
+     * Parses a page from a response body. Returns null if the body is empty.
+     */
+    public static SubscriberPage parse(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            SubscriberPage page = new SubscriberPage();
+            return parse(parser, page, page) ? page : null;
+        }
+    }
+
+    /**
+     * Like parse(InputStream), also keeping each subscriber's state and created_at on the page.
+     */
+    public static SubscriberPage parseWithDetails(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            SubscriberPage page = new SubscriberPage();
+            return parse(parser, null, page, page) ? page : null;
+        }
+    }
+
+    /**
+     * Passes each subscriber on the page to the sink and records the pagination on the page.
+     * Returns false if the input held no JSON at all.
+     */
+    public static boolean parse(JsonParser parser, SubscriberSink sink, SubscriberPage pagination) throws IOException {
+        return parse(parser, sink, null, pagination);
+    }
+
+    // Subscribers go to detailSink when it is set, otherwise to sink
+    private static boolean parse(JsonParser parser, SubscriberSink sink, SubscriberDetailSink detailSink,
+            SubscriberPage pagination) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object for a subscriber page, got " + token);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("subscribers".equals(field) && value == JsonToken.START_ARRAY) {
+                readSubscribers(parser, sink, detailSink);
+            } else if ("pagination".equals(field) && value == JsonToken.START_OBJECT) {
+                readPagination(parser, pagination);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return true;
+    }
+
+    private static void readSubscribers(JsonParser parser, SubscriberSink sink, SubscriberDetailSink detailSink) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            long id = 0;
+            String email = null;
+            String state = null;
+            String createdAt = null;
+            // only "active" counts as active, and a subscriber without a state is taken to be active
+            boolean active = true;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value.isStructStart()) {
+                    // only scalars are read; an object or array is skipped whole, so its inner fields
+                    // are never taken for the subscriber's own
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "id" -> id = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : parser.getValueAsLong(0);
+                    case "email_address" -> email = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "state" -> {
+                        active = value != JsonToken.VALUE_STRING || "active".equals(parser.getText());
+                        if (detailSink != null && value == JsonToken.VALUE_STRING) {
+                            state = parser.getText();
+                        }
+                    }
+                    case "created_at" -> {
+                        if (detailSink != null && value == JsonToken.VALUE_STRING) {
+                            createdAt = parser.getText();
+                        }
+                    }
+                    default -> { }
+                }
+            }
+            if (detailSink != null) {
+                detailSink.accept(id, email, state, createdAt);
+            } else {
+                sink.accept(id, email, active);
+            }
+        }
+    }
+
+    private static void readPagination(JsonParser parser, SubscriberPage pagination) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value.isStructStart()) {
+                parser.skipChildren();
+            } else if ("end_cursor".equals(field)) {
+                pagination.setEndCursor(value == JsonToken.VALUE_STRING ? parser.getText() : null);
+            } else if ("has_next_page".equals(field) && value.isBoolean()) {
+                pagination.setHasNextPage(parser.getBooleanValue());
+            }
+        }
+    }
+}
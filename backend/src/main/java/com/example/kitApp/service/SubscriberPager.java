@@ -0,0 +1,196 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.SubscriberPage;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Follows Kit's end cursors from one subscriber page to the next.
+ * Shared by everything that walks the subscriber list, so they all stop under the same conditions.
+ *
+ * Fetches are pipelined: as soon as a page arrives, the request for the page after it is started on a
+ * prefetch thread, and only then is the page handed to the handler. Kit's latency is overlapped with
+ * whatever the handler does (merging, writing to the client), and at most one page is ever read ahead.
+ *
+ * Read-ahead is best effort and never queues. A page is only read ahead when a prefetch thread is free right
+ * now and the walk's API key is under its share of them (prefetch-per-key); otherwise the walking thread fetches
+ * the page itself. So a walk never waits behind another walk's fetches, whichever key that walk belongs to;
+ * a busy instance just degrades to plain sequential paging.
+ */
+@Component
+public class SubscriberPager {
+    private static final Logger logger = LoggerFactory.getLogger(SubscriberPager.class);
+
+    // Maximum number of pages fetched after the first one, 0 for no limit
+    private final int pageBudget;
+    private final int prefetchPerKey;
+    private final ThreadPoolExecutor prefetchers;
+    // read-aheads running per key fingerprint; entries are removed when they drop back to 0
+    private final ConcurrentHashMap<String, Integer> prefetchesInFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Receives each page fetched by the pager.
+     */
+    @FunctionalInterface
+    public interface PageHandler {
+        void onPage(SubscriberPage page) throws IOException;
+    }
+
+    public SubscriberPager(@Value("${kit.subscribers.page-budget:0}") int pageBudget,
+            @Value("${kit.subscribers.prefetch-threads:${kit.requests.async-threads:64}}") int prefetchThreads,
+            @Value("${kit.subscribers.prefetch-per-key:4}") int prefetchPerKey) {
+        if (pageBudget < 0 || prefetchThreads < 1 || prefetchPerKey < 1) {
+            throw new IllegalArgumentException("Page budget must be 0 or more and prefetch threads at least 1");
+        }
+        this.pageBudget = pageBudget;
+        this.prefetchPerKey = prefetchPerKey;
+        // no queue: a read-ahead either starts on a free thread straight away or is not made at all
+        this.prefetchers = new ThreadPoolExecutor(prefetchThreads, prefetchThreads, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), prefetchThreadFactory());
+        this.prefetchers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Fetches the pages following the first page and hands each to the handler, in order.
+     * Stops when Kit says there is no next page, the cursor is empty, a page comes back empty,
+     * a cursor repeats (Kit sent us in a loop), or the page budget is used up.
+     * (Kit may still send an end_cursor on the last page, so an empty page is the fallback way the walk ends)
+     *
+     * Must be called with the API key set on the calling thread; fetches run with the same key.
+     * returns true if the walk reached the end of the list, false if it was cut off by a loop or the budget.
+     */
+    public boolean forEachFollowingPage(SubscriberPage firstPage, Function<String, SubscriberPage> fetchPage,
+            PageHandler handler) throws IOException {
+        String apiKey = KitApiKeyContext.getApiKey();
+        String keyFingerprint = apiKey == null ? "" : KitApiKeyContext.fingerprint(apiKey);
+        Set<String> seenCursors = new HashSet<>();
+        int pagesFetched = 0;
+
+        SubscriberPage page = firstPage;
+        Future<SubscriberPage> next = null;
+        try {
+            while (true) {
+                String endCursor = page.getEndCursor();
+                if (Boolean.FALSE.equals(page.getHasNextPage()) || endCursor == null || endCursor.isEmpty()) {
+                    return true;
+                }
+                if (!seenCursors.add(endCursor)) {
+                    logger.warn("Kit returned end cursor {} twice, stopping pagination to prevent an infinite loop.", endCursor);
+                    return false;
+                }
+                if (pageBudget > 0 && pagesFetched >= pageBudget) {
+                    logger.warn("Page budget of {} reached, stopping pagination.", pageBudget);
+                    return false;
+                }
+
+                logger.debug("Fetching next page of subscribers with end cursor: {}", endCursor);
+                pagesFetched++;
+                SubscriberPage fetched = next != null ? await(next) : fetchPage.apply(endCursor);
+                next = null;
+                if (fetched == null || fetched.isEmpty()) {
+                    logger.info("No more subscribers found after {} pages.", pagesFetched);
+                    return true;
+                }
+
+                // start on the following page before handing this one over
+                String followingCursor = fetched.getEndCursor();
+                if (!Boolean.FALSE.equals(fetched.getHasNextPage()) && followingCursor != null && !followingCursor.isEmpty()
+                        && !seenCursors.contains(followingCursor) && (pageBudget == 0 || pagesFetched < pageBudget)) {
+                    next = readAhead(keyFingerprint, KitApiKeyContext.wrap(apiKey, () -> fetchPage.apply(followingCursor)));
+                }
+                handler.onPage(fetched);
+                page = fetched;
+            }
+        } finally {
+            if (next != null) {
+                // the walk ended early (e.g. the handler failed), so the page read ahead is not wanted
+                next.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Starts the fetch on a prefetch thread if one is free and the key is under its share of them,
+     * returns null (the walking thread fetches the page itself) otherwise.
+     */
+    private Future<SubscriberPage> readAhead(String keyFingerprint, Callable<SubscriberPage> fetch) {
+        boolean[] acquired = new boolean[1];
+        prefetchesInFlight.compute(keyFingerprint, (key, running) -> {
+            int count = running == null ? 0 : running;
+            acquired[0] = count < prefetchPerKey;
+            return acquired[0] ? count + 1 : running;
+        });
+        if (!acquired[0]) {
+            return null;
+        }
+        try {
+            return prefetchers.submit(() -> {
+                try {
+                    return fetch.call();
+                } finally {
+                    releaseReadAhead(keyFingerprint);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            releaseReadAhead(keyFingerprint);
+            return null;
+        }
+    }
+
+    private void releaseReadAhead(String keyFingerprint) {
+        prefetchesInFlight.computeIfPresent(keyFingerprint, (key, running) -> running > 1 ? running - 1 : null);
+    }
+
+    private static SubscriberPage await(Future<SubscriberPage> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next subscriber page");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchers.shutdownNow();
+    }
+
+    private static ThreadFactory prefetchThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "kit-pager-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.SubscriberPage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps a snapshot of each account's subscriber list, keyed by API key fingerprint.
+ *
+ * A snapshot younger than refresh-after is served as is. An older one is brought up to date by asking Kit only
+ * for subscribers updated since the last sync and merging them in. Once a snapshot is older than the ttl it is
+ * thrown away and the whole list is loaded again, which also picks up changes the incremental refresh cannot see
+ * (e.g. a subscriber whose email address changed). At most max-entries accounts are kept, least recently used first out.
+ */
+@Service
+public class SubscriberSnapshotCache {
+    private static final Logger logger = LoggerFactory.getLogger(SubscriberSnapshotCache.class);
+
+    private final KitApiService kitApiService;
+    private final SubscriberPager subscriberPager;
+    private final Duration refreshAfter;
+    private final Duration ttl;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+
+    // Access-ordered so the least recently used account is evicted first
+    private final Map<String, Snapshot> snapshots;
+
+    private static class Snapshot {
+        // email address -> Kit subscriber ID (0 when unknown), in the order Kit listed them. Frozen once filled,
+        // so lists handed out keep working while a refresh builds the next version on a copy
+        private EmailArena subscribers;
+        // when the full list was last loaded, used for the ttl
+        private Instant loadedAt;
+        // when the snapshot was last loaded or refreshed, used for refresh-after
+        private Instant syncedAt;
+        // set when an incremental refresh was cut short, so the next access reloads everything
+        private boolean incomplete;
+        // ContentHash of the emails, computed on first use and cleared whenever they change
+        private String contentHash;
+        // trimmed, lower-cased emails for membership tests, built on first use and cleared whenever they change
+        private EmailArena emailSet;
+    }
+
+    /**
+     * The subscriber emails together with a hash of them, taken from the same version of the snapshot.
+     * The emails are a read-only view of the snapshot's EmailArena, so they are serialised straight from its bytes.
+     */
+    public static class SubscriberList {
+        private final List<String> emails;
+        private final String contentHash;
+
+        SubscriberList(List<String> emails, String contentHash) {
+            this.emails = emails;
+            this.contentHash = contentHash;
+        }
+
+        public List<String> getEmails() { return emails; }
+        public String getContentHash() { return contentHash; }
+    }
+
+    @Autowired
+    public SubscriberSnapshotCache(KitApiService kitApiService, SubscriberPager subscriberPager, MeterRegistry meterRegistry,
+            @Value("${kit.subscribers.cache.refresh-after:60s}") Duration refreshAfter,
+            @Value("${kit.subscribers.cache.ttl:30m}") Duration ttl,
+            @Value("${kit.subscribers.cache.max-entries:50}") int maxEntries) {
+        this(kitApiService, subscriberPager, meterRegistry, refreshAfter, ttl, maxEntries, Clock.systemUTC());
+    }
+
+    SubscriberSnapshotCache(KitApiService kitApiService, SubscriberPager subscriberPager, MeterRegistry meterRegistry,
+            Duration refreshAfter, Duration ttl, int maxEntries, Clock clock) {
+        this.kitApiService = kitApiService;
+        this.subscriberPager = subscriberPager;
+        this.refreshAfter = refreshAfter;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the subscriber emails for the API key of the current request, loading or refreshing the snapshot as
+     * needed, with a content hash of the emails for ETags. The hash is kept with the snapshot, so it is only
+     * recomputed after a load or refresh changed the list.
+     * Returns null if Kit gave no response for the first page of a full load.
+     */
+    public SubscriberList getSubscriberList() {
+        String apiKey = KitApiKeyContext.getApiKey();
+        if (apiKey == null) {
+            throw new IllegalStateException("API Key not available for this request.");
+        }
+        return readSnapshot(apiKey, snapshot -> {
+            if (snapshot.contentHash == null) {
+                snapshot.contentHash = ContentHash.of(snapshot.subscribers.asList());
+            }
+            return new SubscriberList(snapshot.subscribers.asList(), snapshot.contentHash);
+        });
+    }
+
+    /**
+     * Returns an email to subscriber ID index for the given API key, built from the same snapshot as getSubscriberList.
+     * Must be called on a thread where that key is the current API key, since a load or refresh may call Kit.
+     * Returns null if Kit gave no response for the first page of a full load.
+     */
+    public Map<String, Long> getSubscriberIds(String apiKey) {
+        return readSnapshot(apiKey, snapshot -> {
+            Map<String, Long> index = new HashMap<>(snapshot.subscribers.size() * 4 / 3 + 1);
+            snapshot.subscribers.forEach((email, id) -> {
+                if (id != 0) {
+                    index.put(email, id);
+                }
+            });
+            return index;
+        });
+    }
+
+    /**
+     * Returns the set of subscriber emails, trimmed and lower-cased, for the given API key, built from the same
+     * snapshot as getSubscriberList and kept with it until the list changes. Only active subscribers are in it.
+     * Must be called on a thread where that key is the current API key, since a load or refresh may call Kit.
+     * Returns null if Kit gave no response for the first page of a full load.
+     */
+    public Set<String> getSubscriberEmailSet(String apiKey) {
+        return readSnapshot(apiKey, snapshot -> {
+            if (snapshot.emailSet == null) {
+                EmailArena emails = new EmailArena(snapshot.subscribers.size());
+                snapshot.subscribers.forEach((email, id) -> emails.add(normalise(email)));
+                snapshot.emailSet = emails.freeze();
+            }
+            return snapshot.emailSet.asSet();
+        });
+    }
+
+    /**
+     * How emails are compared across the app: trimmed and lower-cased.
+     */
+    public static String normalise(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private <T> T readSnapshot(String apiKey, Function<Snapshot, T> reader) {
+        Snapshot snapshot;
+        synchronized (snapshots) {
+            snapshot = snapshots.computeIfAbsent(KitApiKeyContext.fingerprint(apiKey), key -> new Snapshot());
+        }
+
+        // Requests for the same account wait for each other here, so only one of them goes to Kit
+        synchronized (snapshot) {
+            Instant now = clock.instant();
+            if (snapshot.subscribers == null || snapshot.incomplete || now.isAfter(snapshot.loadedAt.plus(ttl))) {
+                if (!loadAll(snapshot, now)) {
+                    return null;
+                }
+            } else if (now.isAfter(snapshot.syncedAt.plus(refreshAfter))) {
+                refresh(snapshot, now);
+            } else {
+                logger.info("Serving {} cached subscribers", snapshot.subscribers.size());
+            }
+            return reader.apply(snapshot);
+        }
+    }
+
+    private boolean loadAll(Snapshot snapshot, Instant now) {
+        logger.info("Loading full subscriber list from Kit API");
+        long start = System.nanoTime();
+        SubscriberPage firstPage = kitApiService.fetchSubscribers(null);
+        if (firstPage == null) {
+            return false;
+        }
+
+        EmailArena subscribers = new EmailArena(firstPage.size());
+        addAll(subscribers, firstPage);
+        // pages and subscribers received, for the load metrics
+        long[] received = { 1, firstPage.size() };
+        if (!subscribers.isEmpty()) {
+            walk(firstPage, kitApiService::fetchSubscribers, page -> {
+                addAll(subscribers, page);
+                received[0]++;
+                received[1] += page.size();
+            });
+        }
+        recordLoad("full", start, received);
+
+        snapshot.subscribers = subscribers.freeze();
+        snapshot.contentHash = null;
+        snapshot.emailSet = null;
+        snapshot.loadedAt = now;
+        snapshot.syncedAt = now;
+        snapshot.incomplete = false;
+        return true;
+    }
+
+    private void refresh(Snapshot snapshot, Instant now) {
+        // Kit filters by day, so go back a full day from the last sync to be sure nothing in between is missed
+        LocalDate updatedAfter = LocalDate.ofInstant(snapshot.syncedAt, ZoneOffset.UTC).minusDays(1);
+        logger.info("Refreshing cached subscribers with changes since {}", updatedAfter);
+        long start = System.nanoTime();
+
+        try {
+            SubscriberPage firstPage = kitApiService.fetchSubscribersUpdatedAfter(updatedAfter, null);
+            if (firstPage == null) {
+                snapshot.syncedAt = now;
+                return;
+            }
+            // the current version may have been handed out, so changes go into a copy
+            snapshot.subscribers = snapshot.subscribers.copy();
+            merge(snapshot, firstPage);
+            long[] received = { 1, firstPage.size() };
+            boolean complete = true;
+            if (!firstPage.isEmpty()) {
+                complete = walk(firstPage,
+                    cursor -> kitApiService.fetchSubscribersUpdatedAfter(updatedAfter, cursor),
+                    page -> {
+                        merge(snapshot, page);
+                        received[0]++;
+                        received[1] += page.size();
+                    });
+            }
+            recordLoad("incremental", start, received);
+            snapshot.syncedAt = now;
+            snapshot.incomplete = !complete;
+        } catch (Exception e) {
+            // A stale list is more useful than none; the next request will try again
+            logger.warn("Incremental subscriber refresh failed, serving cached list: {}", e.getMessage());
+        } finally {
+            snapshot.subscribers.freeze();
+        }
+    }
+
+    /**
+     * Records how long a load took, how many pages it needed and how fast subscribers came in.
+     * received holds the number of pages, then the number of subscribers.
+     */
+    private void recordLoad(String mode, long startNanos, long[] received) {
+        long elapsed = System.nanoTime() - startNanos;
+        meterRegistry.timer("kit.subscribers.load", "mode", mode).record(elapsed, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("kit.subscribers.load.pages")
+            .description("Subscriber pages fetched per load")
+            .tag("mode", mode)
+            .register(meterRegistry)
+            .record(received[0]);
+        meterRegistry.counter("kit.subscribers.fetched", "mode", mode).increment(received[1]);
+        if (elapsed > 0) {
+            DistributionSummary.builder("kit.subscribers.load.throughput")
+                .description("Subscribers received per second over a whole load")
+                .baseUnit("subscribers/s")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(received[1] * 1e9 / elapsed);
+        }
+    }
+
+    private void addAll(EmailArena subscribers, SubscriberPage page) {
+        page.forEach((id, email, active) -> {
+            if (email != null) {
+                subscribers.put(email, Math.max(id, 0));
+            }
+        });
+    }
+
+    private void merge(Snapshot snapshot, SubscriberPage page) {
+        snapshot.contentHash = null;
+        snapshot.emailSet = null;
+        page.forEach((id, email, active) -> {
+            if (email == null) {
+                return;
+            }
+            if (active) {
+                snapshot.subscribers.put(email, Math.max(id, 0));
+            } else {
+                snapshot.subscribers.remove(email);
+            }
+        });
+    }
+
+    private boolean walk(SubscriberPage firstPage, Function<String, SubscriberPage> fetchPage,
+            SubscriberPager.PageHandler handler) {
+        try {
+            return subscriberPager.forEachFollowingPage(firstPage, fetchPage, handler);
+        } catch (IOException e) {
+            // the handlers used here never do I/O
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.KitApiTagsResponse;
+
+import jakarta.annotation.PreDestroy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps each account's tag list in memory, keyed by API key fingerprint, with stale-while-revalidate.
+ *
+ * A list younger than fresh-for is served as is. An older one is still served straight away, while a background
+ * refresh fetches it again; when the list fits in one page and Kit sent an ETag, the refresh is a conditional
+ * request, so an unchanged list costs Kit a 304. A list older than max-stale is no longer served and the caller
+ * waits for a reload. Every page of tags is fetched. At most max-entries accounts are kept, least recently used first out.
+ */
+@Service
+public class TagCache {
+    private static final Logger logger = LoggerFactory.getLogger(TagCache.class);
+
+    private final KitApiService kitApiService;
+    private final Duration freshFor;
+    private final Duration maxStale;
+    private final Clock clock;
+    private final ExecutorService refreshers;
+
+    // Access-ordered so the least recently used account is evicted first
+    private final Map<String, Entry> entries;
+
+    /**
+     * The tags of one account together with a hash of them, for ETags.
+     */
+    public static class TagList {
+        private final List<KitApiTagsResponse.Tag> tags;
+        private final String contentHash;
+
+        TagList(List<KitApiTagsResponse.Tag> tags) {
+            this.tags = Collections.unmodifiableList(tags);
+            List<String> values = new ArrayList<>(tags.size() * 2);
+            for (KitApiTagsResponse.Tag tag : tags) {
+                values.add(tag.getId());
+                values.add(tag.getName());
+            }
+            this.contentHash = ContentHash.of(values);
+        }
+
+        public List<KitApiTagsResponse.Tag> getTags() { return tags; }
+        public String getContentHash() { return contentHash; }
+    }
+
+    private static class Entry {
+        private volatile TagList list;
+        private volatile Instant fetchedAt;
+        // Kit's ETag for the list, kept only when the whole list came in one page
+        private volatile String etag;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+    }
+
+    @Autowired
+    public TagCache(KitApiService kitApiService,
+            @Value("${kit.tags.cache.fresh-for:30s}") Duration freshFor,
+            @Value("${kit.tags.cache.max-stale:1h}") Duration maxStale,
+            @Value("${kit.tags.cache.max-entries:50}") int maxEntries) {
+        this(kitApiService, freshFor, maxStale, maxEntries, Clock.systemUTC());
+    }
+
+    TagCache(KitApiService kitApiService, Duration freshFor, Duration maxStale, int maxEntries, Clock clock) {
+        this.kitApiService = kitApiService;
+        this.freshFor = freshFor;
+        this.maxStale = maxStale;
+        this.clock = clock;
+        this.refreshers = Executors.newFixedThreadPool(2, refreshThreadFactory());
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the tags for the API key of the current request, loading them first if there are none
+     * or they are past max-stale, and starting a background refresh if they are past fresh-for.
+     */
+    public TagList getTags() {
+        String apiKey = KitApiKeyContext.getApiKey();
+        if (apiKey == null) {
+            throw new IllegalStateException("API Key not available for this request.");
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(KitApiKeyContext.fingerprint(apiKey), key -> new Entry());
+        }
+
+        Instant now = clock.instant();
+        if (entry.list == null || now.isAfter(entry.fetchedAt.plus(maxStale))) {
+            // Requests for the same account wait for each other here, so only one of them goes to Kit
+            synchronized (entry) {
+                if (entry.list == null || now.isAfter(entry.fetchedAt.plus(maxStale))) {
+                    load(entry);
+                }
+                return entry.list;
+            }
+        }
+        if (now.isAfter(entry.fetchedAt.plus(freshFor)) && entry.refreshing.compareAndSet(false, true)) {
+            refreshInBackground(apiKey, entry);
+        }
+        return entry.list;
+    }
+
+    private void refreshInBackground(String apiKey, Entry entry) {
+        Runnable refresh = () -> {
+            try {
+                synchronized (entry) {
+                    load(entry);
+                }
+            } catch (Exception e) {
+                // the stale list stays in place; the next request past fresh-for tries again
+                logger.warn("Background tag refresh failed, serving cached tags: {}", e.getMessage());
+            } finally {
+                entry.refreshing.set(false);
+            }
+        };
+        try {
+            refreshers.execute(KitApiKeyContext.wrap(apiKey, refresh));
+        } catch (RuntimeException e) {
+            entry.refreshing.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches every page of tags into the entry. Must run with the entry's API key as the current key.
+     */
+    private void load(Entry entry) {
+        Instant now = clock.instant();
+        String ifNoneMatch = entry.list != null ? entry.etag : null;
+        ResponseEntity<KitApiTagsResponse> first = kitApiService.fetchTags(null, ifNoneMatch);
+        if (first.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+            logger.debug("Tags unchanged according to Kit");
+            entry.fetchedAt = now;
+            return;
+        }
+
+        List<KitApiTagsResponse.Tag> tags = new ArrayList<>();
+        Set<String> seenCursors = new HashSet<>();
+        KitApiTagsResponse page = first.getBody();
+        boolean singlePage = true;
+        while (page != null) {
+            if (page.getTags() != null) {
+                tags.addAll(page.getTags());
+            }
+            KitApiTagsResponse.Pagination pagination = page.getPagination();
+            String endCursor = pagination != null ? pagination.getEndCursor() : null;
+            if (pagination == null || !Boolean.TRUE.equals(pagination.getHasNextPage())
+                    || endCursor == null || endCursor.isEmpty()) {
+                break;
+            }
+            if (!seenCursors.add(endCursor)) {
+                logger.warn("Kit returned tag cursor {} twice, stopping pagination to prevent an infinite loop.", endCursor);
+                break;
+            }
+            singlePage = false;
+            page = kitApiService.fetchTags(endCursor, null).getBody();
+        }
+
+        logger.info("Loaded {} tags from Kit API", tags.size());
+        entry.list = new TagList(tags);
+        entry.etag = singlePage ? first.getHeaders().getETag() : null;
+        entry.fetchedAt = now;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshers.shutdownNow();
+    }
+
+    private static ThreadFactory refreshThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "kit-tags-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.kitApp.service;
+
+import com.example.kitApp.model.TagOutcome;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of one asynchronous tagging job. Updated by the tagging workers and read by the
+ * polling and SSE endpoints, so everything here is safe to use from several threads.
+ * Outcomes are held in a TagResults, so Kit's response bodies are only kept when the job asked for them.
+ */
+public class TagJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    /**
+     * One processed email, with its position in the submitted list and in completion order.
+     */
+    public static class Entry {
+        private final int sequence;
+        private final int index;
+        private final TagOutcome outcome;
+
+        Entry(int sequence, int index, TagOutcome outcome) {
+            this.sequence = sequence;
+            this.index = index;
+            this.outcome = outcome;
+        }
+
+        public int getSequence() { return sequence; }
+        public int getIndex() { return index; }
+        public TagOutcome getOutcome() { return outcome; }
+    }
+
+    /**
+     * Receives a job's outcomes as they complete, e.g. to push them to an SSE client.
+     * Called on the tagging worker threads, so implementations must hand any slow work (like writing to
+     * a client) to another thread.
+     */
+    public interface Listener {
+        void onOutcome(TagJob job, Entry entry);
+        void onFinished(TagJob job);
+    }
+
+    private final String id;
+    private final String keyFingerprint;
+    private final String tagId;
+    // Number of emails in the job; -1 while they are still being read (see TagJobService.submitStream)
+    private volatile int total;
+    private final Instant createdAt;
+
+    // Outcomes in the order they completed, so pollers can ask for everything after an offset
+    private final TagResults results;
+
+    // Listener -> first sequence it should receive live; earlier entries were replayed on subscribe
+    private final Map<Listener, Integer> listeners = new ConcurrentHashMap<>();
+
+    // Emails not sent to Kit because an earlier job for the same key and tag already tagged them
+    private volatile int skipped;
+
+    // Completes with the total once the input has been read to the end, or fails if the job fails first
+    private final CompletableFuture<Integer> inputRead = new CompletableFuture<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    TagJob(String id, String keyFingerprint, String tagId, int total, Instant createdAt, boolean keepBodies) {
+        this.id = id;
+        this.keyFingerprint = keyFingerprint;
+        this.tagId = tagId;
+        this.total = total;
+        this.createdAt = createdAt;
+        this.results = new TagResults(keepBodies, total < 0 ? 1 << 10 : Math.min(Math.max(total, 1), 1 << 16));
+        if (total >= 0) {
+            inputRead.complete(total);
+        }
+    }
+
+    /**
+     * Records an outcome and passes it on to the listeners.
+     */
+    void record(TagOutcome outcome, int index) {
+        Entry entry;
+        synchronized (results) {
+            int sequence = results.add(outcome, index);
+            entry = new Entry(sequence, index, results.getOutcome(sequence));
+        }
+        listeners.forEach((listener, fromSequence) -> {
+            if (entry.getSequence() >= fromSequence) {
+                listener.onOutcome(this, entry);
+            }
+        });
+    }
+
+    /**
+     * Replays the outcomes recorded so far to the listener, then keeps it informed until the job finishes.
+     * onFinished is delivered exactly once, after which the listener is dropped.
+     */
+    public void subscribe(Listener listener) {
+        List<Entry> backlog;
+        synchronized (results) {
+            backlog = getEntries(0, results.size());
+            listeners.put(listener, backlog.size());
+        }
+        for (Entry entry : backlog) {
+            listener.onOutcome(this, entry);
+        }
+        if (isFinished()) {
+            notifyFinished(listener);
+        }
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the outcomes completed after the given offset, in completion order.
+     */
+    public List<Entry> getEntriesFrom(int offset) {
+        return getEntries(offset, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most limit outcomes completed after the given offset, in completion order.
+     */
+    public List<Entry> getEntries(int offset, int limit) {
+        synchronized (results) {
+            int from = Math.max(offset, 0);
+            int to = (int) Math.min(results.size(), (long) from + Math.max(limit, 0));
+            List<Entry> page = new ArrayList<>(Math.max(to - from, 0));
+            for (int sequence = from; sequence < to; sequence++) {
+                page.add(new Entry(sequence, results.getIndex(sequence), results.getOutcome(sequence)));
+            }
+            return page;
+        }
+    }
+
+    public int getProcessed() {
+        return results.size();
+    }
+
+    /**
+     * Emails (trimmed and lower-cased) this job tagged or found already tagged, for resuming it.
+     */
+    Set<String> succeededEmails() {
+        EmailArena succeeded = new EmailArena();
+        for (Entry entry : getEntriesFrom(0)) {
+            TagOutcome.Result result = entry.getOutcome().getResult();
+            if (result == TagOutcome.Result.TAGGED || result == TagOutcome.Result.ALREADY_TAGGED) {
+                succeeded.add(SubscriberSnapshotCache.normalise(entry.getOutcome().getEmail()));
+            }
+        }
+        return succeeded.asSet();
+    }
+
+    /**
+     * Sets the total once a job's streamed input has been read to the end.
+     */
+    void markInputRead(int total) {
+        this.total = total;
+        inputRead.complete(total);
+    }
+
+    void markInputFailed(Throwable error) {
+        inputRead.completeExceptionally(error);
+    }
+
+    /**
+     * Completes with the number of emails once the job's input has been read to the end (straight away for
+     * a job submitted with a list), or fails if the job fails before that.
+     */
+    public CompletableFuture<Integer> getInputRead() {
+        return inputRead;
+    }
+
+    void markSkipped(int skipped) {
+        this.skipped = skipped;
+    }
+
+    void markRunning() {
+        status = Status.RUNNING;
+    }
+
+    void markFinished(Status finalStatus, String error, Instant finishedAt) {
+        this.error = error;
+        this.finishedAt = finishedAt;
+        this.status = finalStatus;
+        if (finalStatus == Status.COMPLETED) {
+            inputRead.complete(total);
+        } else {
+            inputRead.completeExceptionally(new IllegalStateException(error));
+        }
+        listeners.keySet().forEach(this::notifyFinished);
+    }
+
+    private void notifyFinished(Listener listener) {
+        // whoever removes the listener first delivers the event
+        if (listeners.remove(listener) != null) {
+            listener.onFinished(this);
+        }
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public String getId() { return id; }
+    public String getKeyFingerprint() { return keyFingerprint; }
+    public String getTagId() { return tagId; }
+    public int getTotal() { return total; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public Status getStatus() { return status; }
+    public String getError() { return error; }
+    public int getSuccess() { return results.count(TagOutcome.Result.TAGGED); }
+    public int getAlreadyTagged() { return results.count(TagOutcome.Result.ALREADY_TAGGED); }
+    public int getFailed() { return results.count(TagOutcome.Result.FAILED); }
+    public int getSkipped() { return skipped; }
+}
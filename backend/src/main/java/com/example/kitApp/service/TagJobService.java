@@ -0,0 +1,318 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.TagOutcome;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Runs tag requests as background jobs, so the HTTP request that submits them returns straight away.
+ * Jobs run on a small bounded pool; each job still fans its calls out through KitTaggingService.
+ * Finished jobs are kept for the retention period so clients can collect the results.
+ *
+ * With a journal directory configured (see TagJournalStore), every outcome is also appended to disk as it
+ * completes, and jobs from before a restart are listed again on startup.
+ *
+ * A job that did not complete (cut off by a restart, or failed part way) can be resumed: the new job names it and
+ * only sends Kit the emails it did not get tagged. Only that one job's outcomes are trusted. Such a job stays
+ * listed for as long as its journal is kept (the journal retention, when longer than the retention period), so a
+ * job cut off by a long outage can still be resumed once the backend is back; a tag removed since is not noticed.
+ */
+@Service
+public class TagJobService {
+    private static final Logger logger = LoggerFactory.getLogger(TagJobService.class);
+
+    private final KitTaggingService kitTaggingService;
+    private final TagJournalStore journalStore;
+    private final ThreadPoolExecutor jobExecutor;
+    private final Duration retention;
+    // how long a job that did not complete stays listed, and so can be resumed
+    private final Duration resumableFor;
+    private final Clock clock = Clock.systemUTC();
+
+    private final Map<String, TagJob> jobs = new ConcurrentHashMap<>();
+
+    public TagJobService(KitTaggingService kitTaggingService, TagJournalStore journalStore,
+            @Value("${kit.tagging.jobs.max-concurrent:4}") int maxConcurrentJobs,
+            @Value("${kit.tagging.jobs.queue-capacity:100}") int queueCapacity,
+            @Value("${kit.tagging.jobs.retention:1h}") Duration retention) {
+        this.kitTaggingService = kitTaggingService;
+        this.journalStore = journalStore;
+        this.retention = retention;
+        this.resumableFor = journalStore.isEnabled() && journalStore.getRetention().compareTo(retention) > 0
+            ? journalStore.getRetention() : retention;
+        AtomicInteger counter = new AtomicInteger();
+        this.jobExecutor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "kit-tag-job-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        if (journalStore.isEnabled()) {
+            journalStore.purgeExpired(clock.instant());
+            for (TagJob job : journalStore.restore(clock.instant().minus(resumableFor))) {
+                jobs.put(job.getId(), job);
+            }
+            // completed jobs only come back while they are within the retention period
+            evictExpiredJobs();
+            logger.info("Restored {} tag jobs from their journals", jobs.size());
+        }
+    }
+
+    /**
+     * Queues a job tagging the emails with the API key of the current request. Kit's response bodies are
+     * only kept for the job's results when keepBodies is set.
+     * Throws RejectedExecutionException if the job queue is full.
+     */
+    public TagJob submit(String tagId, List<String> emails, boolean keepBodies) {
+        return submit(tagId, emails, keepBodies, null);
+    }
+
+    /**
+     * Like submit(tagId, emails, keepBodies), but when resumeJobId is given, the emails that job tagged (or found
+     * already tagged) are recorded as skipped instead of being sent to Kit again. The job must belong to the
+     * current key, use the same tag and have not completed; otherwise IllegalArgumentException is thrown.
+     */
+    public TagJob submit(String tagId, List<String> emails, boolean keepBodies, String resumeJobId) {
+        return submit(tagId, emails, emails.size(), keepBodies, resumeJobId);
+    }
+
+    /**
+     * Like submit(tagId, emails, keepBodies, resumeJobId) for emails that are read while the job runs, such as an
+     * upload being parsed by CsvEmailReader: tagging starts on the first emails while the rest are still arriving,
+     * and the input is never held in full. The job's total is only known once the input has been read to the end,
+     * which job.getInputRead() reports. The iterable is read on the job's thread, once.
+     */
+    public TagJob submitStream(String tagId, Iterable<String> emails, boolean keepBodies, String resumeJobId) {
+        return submit(tagId, emails, -1, keepBodies, resumeJobId);
+    }
+
+    private TagJob submit(String tagId, Iterable<String> emails, int total, boolean keepBodies, String resumeJobId) {
+        String apiKey = KitApiKeyContext.getApiKey();
+        if (apiKey == null) {
+            throw new IllegalStateException("API Key not available for this request.");
+        }
+        evictExpiredJobs();
+        Set<String> done = resumeJobId == null ? Set.of() : resumable(resumeJobId, tagId).succeededEmails();
+
+        TagJob job = new TagJob(UUID.randomUUID().toString(), KitApiKeyContext.fingerprint(apiKey),
+            tagId, total, clock.instant(), keepBodies);
+        jobs.put(job.getId(), job);
+        try {
+            jobExecutor.execute(KitApiKeyContext.wrap(apiKey, () -> run(job, apiKey, emails, done)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        if (total < 0) {
+            logger.info("Queued tag job {} for streamed emails with tag: {}", job.getId(), tagId);
+        } else {
+            logger.info("Queued tag job {} for {} emails with tag: {}", job.getId(), total, tagId);
+        }
+        return job;
+    }
+
+    /**
+     * Returns the job with the given ID, or null if it does not exist, has expired or was submitted with
+     * another API key than the current request's. A job's emails and Kit responses belong to the account
+     * that ran it, so knowing the job ID alone is not enough to read them.
+     */
+    public TagJob getJob(String jobId) {
+        TagJob job = jobs.get(jobId);
+        String apiKey = KitApiKeyContext.getApiKey();
+        if (job == null || apiKey == null || !KitApiKeyContext.fingerprint(apiKey).equals(job.getKeyFingerprint())) {
+            return null;
+        }
+        return job;
+    }
+
+    private TagJob resumable(String resumeJobId, String tagId) {
+        TagJob resumed = getJob(resumeJobId);
+        if (resumed == null) {
+            throw new IllegalArgumentException("No such tag job to resume: " + resumeJobId);
+        }
+        if (!resumed.getTagId().equals(tagId)) {
+            throw new IllegalArgumentException("Tag job " + resumeJobId + " was for another tag");
+        }
+        if (resumed.getStatus() != TagJob.Status.FAILED) {
+            throw new IllegalArgumentException("Only a tag job that did not complete can be resumed");
+        }
+        return resumed;
+    }
+
+    private void run(TagJob job, String apiKey, Iterable<String> emails, Set<String> done) {
+        job.markRunning();
+        logger.info("Starting tag job {}", job.getId());
+        TagJournal journal = openJournal(job);
+        try {
+            tagInput(job, apiKey, emails, done, journal == null ? job::record : journaling(job, journal), journal);
+            finish(job, journal, TagJob.Status.COMPLETED, null);
+            logger.info("Tag job {} complete. Successfully tagged: {}, Already tagged: {}, Failed: {}, Skipped: {}",
+                job.getId(), job.getSuccess(), job.getAlreadyTagged(), job.getFailed(), job.getSkipped());
+        } catch (Exception e) {
+            logger.error("Tag job {} failed: ", job.getId(), e);
+            job.markInputFailed(e);
+            finish(job, journal, TagJob.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Hands the emails to KitTaggingService as they are read, recording the ones the resumed job already tagged
+     * as skipped instead. Once the input is exhausted the job's total is set (and journaled).
+     * Outcomes keep their index in the input.
+     */
+    private void tagInput(TagJob job, String apiKey, Iterable<String> emails, Set<String> done,
+            ObjIntConsumer<TagOutcome> sink, TagJournal journal) {
+        // only needed when emails are skipped, since KitTaggingService then sees fewer emails than the input has
+        Positions positions = done.isEmpty() ? null : new Positions();
+        Iterable<String> input = () -> new Iterator<>() {
+            private final Iterator<String> source = emails.iterator();
+            private int read;
+            private int skipped;
+            private String next;
+            private boolean ready;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (!ready && source.hasNext()) {
+                    String email = source.next();
+                    int position = read++;
+                    if (email != null && done.contains(SubscriberSnapshotCache.normalise(email))) {
+                        job.markSkipped(++skipped);
+                        sink.accept(new TagOutcome(email, TagOutcome.Result.ALREADY_TAGGED, 200, "Skipped: tagged by the resumed job"), position);
+                    } else {
+                        if (positions != null) {
+                            positions.add(position);
+                        }
+                        next = email;
+                        ready = true;
+                    }
+                }
+                if (!ready && !exhausted) {
+                    exhausted = true;
+                    inputRead(job, journal, read);
+                }
+                return ready;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return next;
+            }
+        };
+        kitTaggingService.tagAll(apiKey, job.getTagId(), input,
+            positions == null ? sink : (outcome, index) -> sink.accept(outcome, positions.get(index)));
+    }
+
+    private void inputRead(TagJob job, TagJournal journal, int total) {
+        if (job.getTotal() < 0 && journal != null) {
+            try {
+                journal.recordTotal(total);
+            } catch (IOException e) {
+                logger.warn("Could not journal the total of tag job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+        job.markInputRead(total);
+    }
+
+    private ObjIntConsumer<TagOutcome> journaling(TagJob job, TagJournal journal) {
+        return (outcome, index) -> {
+            try {
+                journal.append(index, outcome);
+            } catch (IOException e) {
+                // the journal only matters after a restart; losing it must not fail the job
+                logger.warn("Could not journal outcome for tag job {}: {}", job.getId(), e.getMessage());
+            }
+            job.record(outcome, index);
+        };
+    }
+
+    private TagJournal openJournal(TagJob job) {
+        if (!journalStore.isEnabled()) {
+            return null;
+        }
+        try {
+            return journalStore.open(job);
+        } catch (IOException e) {
+            logger.warn("Could not open a journal for tag job {}, running it without one: {}", job.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void finish(TagJob job, TagJournal journal, TagJob.Status status, String error) {
+        if (journal != null) {
+            try (journal) {
+                journal.finish(status);
+            } catch (IOException e) {
+                logger.warn("Could not close the journal for tag job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+        job.markFinished(status, error, clock.instant());
+    }
+
+    /**
+     * Input positions of the emails handed to KitTaggingService, in the order they were handed over.
+     * Appended by the thread reading the input; the tagging workers only ask for positions appended
+     * before their email was handed over.
+     */
+    private static final class Positions {
+        private volatile int[] positions = new int[1 << 10];
+        private int size;
+
+        void add(int position) {
+            int[] current = positions;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size++] = position;
+            positions = current;
+        }
+
+        int get(int index) {
+            return positions[index];
+        }
+    }
+
+    private void evictExpiredJobs() {
+        Instant now = clock.instant();
+        Instant completedCutoff = now.minus(retention);
+        Instant failedCutoff = now.minus(resumableFor);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt()
+            .isBefore(job.getStatus() == TagJob.Status.FAILED ? failedCutoff : completedCutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.kitApp.service;
+
+import com.example.kitApp.model.TagOutcome;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Append-only journal of one tag job, one line per processed email, written as outcomes complete.
+ *
+ * Lines are tab separated: a "#job" header (job ID, key fingerprint, tag ID, total, created at), then
+ * "index result status email" for each outcome, and a final "#end status" once the job finishes.
+ * A job whose emails are read while it runs has -1 as the header total and gets a "#total n" line
+ * once its input has been read to the end.
+ * Writes are buffered and forced to disk every syncEvery outcomes and when the job ends, so a crash loses
+ * at most the last unsynced batch; TagJournalStore ignores a torn last line when reading it back.
+ */
+class TagJournal implements Closeable {
+
+    static final String HEADER = "#job";
+    static final String END = "#end";
+    static final String TOTAL = "#total";
+
+    private final FileOutputStream file;
+    private final BufferedWriter writer;
+    private final int syncEvery;
+    private int unsynced;
+
+    private TagJournal(Path path, int syncEvery) throws IOException {
+        this.file = new FileOutputStream(path.toFile(), true);
+        this.writer = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8));
+        this.syncEvery = syncEvery;
+    }
+
+    static TagJournal create(Path path, TagJob job, int syncEvery) throws IOException {
+        TagJournal journal = new TagJournal(path, syncEvery);
+        journal.writeLine(String.join("\t", HEADER, job.getId(), job.getKeyFingerprint(), clean(job.getTagId()),
+            String.valueOf(job.getTotal()), job.getCreatedAt().toString()));
+        journal.sync();
+        return journal;
+    }
+
+    /**
+     * Appends an outcome. Called from the tagging workers, so writes are serialised here.
+     */
+    synchronized void append(int index, TagOutcome outcome) throws IOException {
+        writeLine(index + "\t" + outcome.getResult() + "\t" + outcome.getStatus() + "\t" + clean(outcome.getEmail()));
+        if (++unsynced >= syncEvery) {
+            sync();
+        }
+    }
+
+    synchronized void recordTotal(int total) throws IOException {
+        writeLine(TOTAL + "\t" + total);
+    }
+
+    synchronized void finish(TagJob.Status status) throws IOException {
+        writeLine(END + "\t" + status);
+        sync();
+    }
+
+    private void writeLine(String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        file.getChannel().force(false);
+        unsynced = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    // Tabs and line breaks would break the line format; neither belongs in an email or tag ID
+    static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.kitApp.model.TagOutcome;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the tag job journals (see TagJournal) in one directory, one file per job.
+ *
+ * Jobs that were running when the backend stopped are restored from their journals on startup (as
+ * interrupted, with the outcomes they had reached), so they can be resumed (see TagJobService) for as long as
+ * their journal is kept. Journals older than the journal retention are deleted. With no directory configured,
+ * journaling is off.
+ */
+@Component
+public class TagJournalStore {
+    private static final Logger logger = LoggerFactory.getLogger(TagJournalStore.class);
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path dir;
+    private final int syncEvery;
+    private final Duration retention;
+
+    public TagJournalStore(@Value("${kit.tagging.jobs.journal.dir:}") String dir,
+            @Value("${kit.tagging.jobs.journal.sync-every:256}") int syncEvery,
+            @Value("${kit.tagging.jobs.journal.retention:7d}") Duration retention) {
+        if (syncEvery < 1) {
+            throw new IllegalArgumentException("Journal sync-every must be at least 1");
+        }
+        this.dir = dir == null || dir.isBlank() ? null : Paths.get(dir);
+        this.syncEvery = syncEvery;
+        this.retention = retention;
+        if (this.dir != null) {
+            try {
+                Files.createDirectories(this.dir);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create tag job journal directory " + this.dir, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    /**
+     * Starts the journal for a new job.
+     */
+    TagJournal open(TagJob job) throws IOException {
+        return TagJournal.create(dir.resolve(job.getId() + SUFFIX), job, syncEvery);
+    }
+
+    /**
+     * Rebuilds the jobs journaled since the given time, for the job list after a restart.
+     * A job whose journal has no end record was cut off and comes back as FAILED.
+     */
+    List<TagJob> restore(Instant since) {
+        List<TagJob> jobs = new ArrayList<>();
+        for (Path path : journals()) {
+            try {
+                Instant modified = Files.getLastModifiedTime(path).toInstant();
+                if (modified.isBefore(since)) {
+                    continue;
+                }
+                TagJob job = restore(path, modified);
+                if (job != null) {
+                    jobs.add(job);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping unreadable tag job journal {}: {}", path, e.getMessage());
+            }
+        }
+        return jobs;
+    }
+
+    private TagJob restore(Path path, Instant modified) throws IOException {
+        List<String> lines = readLines(path);
+        String[] header = lines.isEmpty() ? new String[0] : split(lines.get(0));
+        if (!isHeader(header)) {
+            return null;
+        }
+        TagJob job = new TagJob(header[1], header[2], header[3], Integer.parseInt(header[4]), Instant.parse(header[5]), false);
+        job.markRunning();
+        TagJob.Status finalStatus = null;
+        for (String line : lines.subList(1, lines.size())) {
+            String[] record = split(line);
+            if (record.length == 2 && TagJournal.END.equals(record[0])) {
+                finalStatus = TagJob.Status.valueOf(record[1]);
+            } else if (record.length == 2 && TagJournal.TOTAL.equals(record[0])) {
+                job.markInputRead(Integer.parseInt(record[1]));
+            } else if (record.length == 4) {
+                TagOutcome.Result result = TagOutcome.Result.valueOf(record[1]);
+                TagOutcome outcome = result == TagOutcome.Result.FAILED
+                    ? TagOutcome.failed(record[3], "Failed before restart")
+                    : new TagOutcome(record[3], result, Integer.parseInt(record[2]), null);
+                job.record(outcome, Integer.parseInt(record[0]));
+            }
+        }
+        if (job.getTotal() < 0) {
+            // cut off while its input was still being read; what was reached is all there is
+            job.markInputRead(job.getProcessed());
+        }
+        if (finalStatus != null) {
+            job.markFinished(finalStatus, null, modified);
+        } else {
+            job.markFinished(TagJob.Status.FAILED,
+                "Interrupted by a restart; resubmit the same emails with resumeJobId to tag only the remaining ones", modified);
+        }
+        return job;
+    }
+
+    /**
+     * Deletes journals last written before the journal retention.
+     */
+    void purgeExpired(Instant now) {
+        Instant cutoff = now.minus(retention);
+        for (Path path : journals()) {
+            try {
+                if (Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(path);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not delete expired tag job journal {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private List<Path> journals() {
+        List<Path> paths = new ArrayList<>();
+        if (dir == null) {
+            return paths;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(paths::add);
+        } catch (IOException e) {
+            logger.warn("Could not list tag job journals in {}: {}", dir, e.getMessage());
+        }
+        return paths;
+    }
+
+    /**
+     * Complete lines of a journal. A last line without its newline was torn by a crash mid-write and is dropped.
+     */
+    private static List<String> readLines(Path path) throws IOException {
+        String content = Files.readString(path, StandardCharsets.UTF_8);
+        int end = content.lastIndexOf('\n');
+        if (end < 0) {
+            return List.of();
+        }
+        return Arrays.asList(content.substring(0, end).split("\n", -1));
+    }
+
+    private static boolean isHeader(String[] header) {
+        return header.length == 6 && TagJournal.HEADER.equals(header[0]);
+    }
+
+    private static String[] split(String line) {
+        return line == null ? new String[0] : line.split("\t", -1);
+    }
+}
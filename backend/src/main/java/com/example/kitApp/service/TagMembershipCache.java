@@ -0,0 +1,167 @@
+package com.example.kitApp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.SubscriberPage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which emails are known to carry a tag, per API key fingerprint and tag ID, so repeat uploads
+ * can answer "already tagged" locally instead of spending a round trip to Kit on each of them.
+ *
+ * Every successful tag call (tagged or already tagged) adds its email and every untag call removes it. With preload on, the first use of a
+ * tag also walks Kit's list of subscribers with that tag. A tag can be removed in Kit without us seeing it,
+ * so each set is dropped and relearned once it is older than the ttl. At most max-entries (key, tag) sets
+ * are kept, least recently used first out.
+ *
+ * Off by default: until a set is relearned, an email whose tag was removed in Kit is reported as already
+ * tagged without the tag being applied again. Only turn it on where tags are not removed outside this app.
+ */
+@Service
+public class TagMembershipCache {
+    private static final Logger logger = LoggerFactory.getLogger(TagMembershipCache.class);
+
+    private final KitApiService kitApiService;
+    private final SubscriberPager subscriberPager;
+    private final boolean enabled;
+    private final boolean preload;
+    private final Duration ttl;
+    private final Clock clock;
+
+    // Access-ordered so the least recently used set is evicted first
+    private final Map<String, Membership> memberships;
+
+    private static class Membership {
+        // normalised emails known to have the tag; written by the tagging workers
+        private final Set<String> emails = ConcurrentHashMap.newKeySet();
+        private final Instant createdAt;
+        private boolean preloaded;
+
+        Membership(Instant createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+
+    @Autowired
+    public TagMembershipCache(KitApiService kitApiService, SubscriberPager subscriberPager,
+            @Value("${kit.tagging.membership.enabled:false}") boolean enabled,
+            @Value("${kit.tagging.membership.preload:false}") boolean preload,
+            @Value("${kit.tagging.membership.ttl:6h}") Duration ttl,
+            @Value("${kit.tagging.membership.max-entries:200}") int maxEntries) {
+        this(kitApiService, subscriberPager, enabled, preload, ttl, maxEntries, Clock.systemUTC());
+    }
+
+    TagMembershipCache(KitApiService kitApiService, SubscriberPager subscriberPager, boolean enabled, boolean preload,
+            Duration ttl, int maxEntries, Clock clock) {
+        this.kitApiService = kitApiService;
+        this.subscriberPager = subscriberPager;
+        this.enabled = enabled;
+        this.preload = preload;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.memberships = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Membership> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the emails known to have the tag for the given API key, as a live read-only view.
+     * Must be called on a thread where that key is the current API key, since a preload calls Kit.
+     * Returns an empty set when the cache is disabled.
+     */
+    public Set<String> knownTagged(String apiKey, String tagId) {
+        if (!enabled || tagId == null) {
+            return Collections.emptySet();
+        }
+        Membership membership = membership(apiKey, tagId);
+        if (preload) {
+            // Requests for the same key and tag wait for each other here, so only one of them walks the list
+            synchronized (membership) {
+                if (!membership.preloaded) {
+                    load(membership, tagId);
+                    membership.preloaded = true;
+                }
+            }
+        }
+        return Collections.unmodifiableSet(membership.emails);
+    }
+
+    /**
+     * Records that the email now has the tag.
+     */
+    public void record(String apiKey, String tagId, String email) {
+        if (enabled && tagId != null && email != null) {
+            membership(apiKey, tagId).emails.add(SubscriberSnapshotCache.normalise(email));
+        }
+    }
+
+    /**
+     * Records that the tag was removed from the email.
+     */
+    public void forget(String apiKey, String tagId, String email) {
+        if (enabled && tagId != null && email != null) {
+            membership(apiKey, tagId).emails.remove(SubscriberSnapshotCache.normalise(email));
+        }
+    }
+
+    static boolean contains(Set<String> known, String email) {
+        return email != null && !known.isEmpty() && known.contains(SubscriberSnapshotCache.normalise(email));
+    }
+
+    private Membership membership(String apiKey, String tagId) {
+        String key = KitApiKeyContext.fingerprint(apiKey) + " " + tagId;
+        Instant now = clock.instant();
+        synchronized (memberships) {
+            Membership membership = memberships.get(key);
+            if (membership == null || now.isAfter(membership.createdAt.plus(ttl))) {
+                membership = new Membership(now);
+                memberships.put(key, membership);
+            }
+            return membership;
+        }
+    }
+
+    /**
+     * Adds every subscriber Kit lists under the tag. A failure is logged and leaves the set as learned so far;
+     * the emails it misses are simply sent to Kit as usual.
+     */
+    private void load(Membership membership, String tagId) {
+        try {
+            SubscriberPage firstPage = kitApiService.fetchTagSubscribers(tagId, null);
+            if (firstPage == null || firstPage.isEmpty()) {
+                return;
+            }
+            addAll(membership, firstPage);
+            subscriberPager.forEachFollowingPage(firstPage,
+                cursor -> kitApiService.fetchTagSubscribers(tagId, cursor),
+                page -> addAll(membership, page));
+            logger.info("Loaded {} subscribers with tag {} from Kit API", membership.emails.size(), tagId);
+        } catch (Exception e) {
+            logger.warn("Could not load the subscribers with tag {}: {}", tagId, e.getMessage());
+        }
+    }
+
+    private static void addAll(Membership membership, SubscriberPage page) {
+        for (int i = 0; i < page.size(); i++) {
+            if (page.getEmail(i) != null) {
+                membership.emails.add(SubscriberSnapshotCache.normalise(page.getEmail(i)));
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.kitApp.service;
+
+import com.example.kitApp.model.TagOutcome;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Compact store of tag outcomes, one row per processed email in completion order.
+ *
+ * Rows are kept in parallel primitive columns (input index, result, HTTP status) next to the email, instead of
+ * one TagOutcome or detail map per email, so a 100k email job costs a few MB. Kit's response bodies are dropped
+ * unless keepBodies is set; failure messages are always kept, in a sparse map, since they say what went wrong.
+ * Safe to use from several threads.
+ */
+public class TagResults {
+
+    private static final TagOutcome.Result[] RESULTS = TagOutcome.Result.values();
+
+    /**
+     * How many per-email details a response includes.
+     */
+    public enum Details {
+        ALL, FAILURES, NONE;
+
+        /**
+         * Parses a request parameter (all, failures or none, in any case).
+         */
+        public static Details parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("details must be one of all, failures or none");
+            }
+        }
+
+        public boolean includes(TagOutcome.Result result) {
+            return this == ALL || (this == FAILURES && result == TagOutcome.Result.FAILED);
+        }
+    }
+
+    private final boolean keepBodies;
+
+    private int size;
+    private int[] indexes;
+    private String[] emails;
+    private byte[] results;
+    private short[] statuses;
+    // sequence -> body, only for failures and, with keepBodies, for everything Kit answered
+    private final Map<Integer, String> bodies = new HashMap<>();
+    private final int[] counts = new int[RESULTS.length];
+
+    public TagResults(boolean keepBodies) {
+        this(keepBodies, 16);
+    }
+
+    public TagResults(boolean keepBodies, int expectedSize) {
+        this.keepBodies = keepBodies;
+        int capacity = Math.max(expectedSize, 1);
+        this.indexes = new int[capacity];
+        this.emails = new String[capacity];
+        this.results = new byte[capacity];
+        this.statuses = new short[capacity];
+    }
+
+    /**
+     * Appends an outcome and returns its sequence number (its position in completion order).
+     */
+    public synchronized int add(TagOutcome outcome, int index) {
+        if (size == indexes.length) {
+            int capacity = size * 2;
+            indexes = Arrays.copyOf(indexes, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+            results = Arrays.copyOf(results, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+        }
+        int sequence = size++;
+        indexes[sequence] = index;
+        emails[sequence] = outcome.getEmail();
+        results[sequence] = (byte) outcome.getResult().ordinal();
+        statuses[sequence] = (short) outcome.getStatus();
+        if (outcome.getBody() != null && (keepBodies || outcome.getResult() == TagOutcome.Result.FAILED)) {
+            bodies.put(sequence, outcome.getBody());
+        }
+        counts[outcome.getResult().ordinal()]++;
+        return sequence;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int count(TagOutcome.Result result) {
+        return counts[result.ordinal()];
+    }
+
+    public synchronized int getIndex(int sequence) {
+        return indexes[sequence];
+    }
+
+    public synchronized TagOutcome.Result getResult(int sequence) {
+        return RESULTS[results[sequence]];
+    }
+
+    /**
+     * Rebuilds the outcome stored at the given sequence, with its body if one was kept.
+     */
+    public synchronized TagOutcome getOutcome(int sequence) {
+        return new TagOutcome(emails[sequence], RESULTS[results[sequence]], statuses[sequence], bodies.get(sequence));
+    }
+
+    /**
+     * Sequence numbers ordered by input index, for responses listed in the order the emails were submitted.
+     */
+    public synchronized int[] inputOrder() {
+        int[] order = new int[size];
+        boolean dense = true;
+        for (int sequence = 0; sequence < size && dense; sequence++) {
+            int index = indexes[sequence];
+            if (index < 0 || index >= size) {
+                dense = false;
+            } else {
+                order[index] = sequence;
+            }
+        }
+        if (dense) {
+            return order;
+        }
+        // indexes with gaps (e.g. a job that was cut short): fall back to sorting
+        return IntStream.range(0, size).boxed()
+            .sorted((a, b) -> Integer.compare(indexes[a], indexes[b]))
+            .mapToInt(Integer::intValue).toArray();
+    }
+}
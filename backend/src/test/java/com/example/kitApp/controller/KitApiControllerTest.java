@@ -2,18 +2,49 @@ package com.example.kitApp.controller;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.kitApp.context.KitApiKeyContext;
 import com.example.kitApp.service.KitApiService;
-import com.example.kitApp.model.KitApiSubscribersResponse;
-
+import com.example.kitApp.service.KitRequestExecutor;
+import com.example.kitApp.service.KitTaggingService;
+import com.example.kitApp.service.SubscriberPager;
+import com.example.kitApp.service.SubscriberSnapshotCache;
+import com.example.kitApp.service.TagCache;
+import com.example.kitApp.service.TagMembershipCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.example.kitApp.model.SubscriberPage;
+import com.example.kitApp.model.TagBatchRequest;
+import com.example.kitApp.model.TagSubscribersRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger; // added import
 import org.mockito.stubbing.Answer; // added import
@@ -33,14 +64,29 @@ public class KitApiControllerTest {
 
     @BeforeEach
     void setUp() {
-        controller = new KitApiController(kitApiService);
+        // page budget of 8, as the old hard-coded safety limit
+        SubscriberPager subscriberPager = new SubscriberPager(8, 2, 2);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SubscriberSnapshotCache subscriberSnapshotCache = new SubscriberSnapshotCache(
+            kitApiService, subscriberPager, meterRegistry, Duration.ofMinutes(1), Duration.ofMinutes(30), 10);
+        controller = new KitApiController(kitApiService, new KitTaggingService(kitApiService, subscriberSnapshotCache,
+            new TagMembershipCache(kitApiService, subscriberPager, true, false, Duration.ofHours(6), 10), meterRegistry, 4, 4, false, 100, false),
+            subscriberPager, subscriberSnapshotCache, new TagCache(kitApiService, Duration.ofSeconds(30), Duration.ofHours(1), 10),
+            new KitRequestExecutor(2, 10));
+        // normally set by KitApiKeyFilter
+        KitApiKeyContext.setApiKey("test-key");
+    }
+
+    @AfterEach
+    void tearDown() {
+        KitApiKeyContext.clear();
     }
 
     @Test
     void whenKitResponseIsNull_thenReturnsBadRequest() {
         Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull())).thenReturn(null);
 
-        ResponseEntity<?> resp = controller.getSubscribers();
+        ResponseEntity<?> resp = controller.getSubscribers(null).join();
 
         assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
         assertEquals("No response from Kit API.", resp.getBody());
@@ -48,10 +94,10 @@ public class KitApiControllerTest {
 
     @Test
     void whenEmailsEmpty_thenReturnsNotFound() {
-        KitApiSubscribersResponse emptyResp = new KitApiSubscribersResponse(Collections.emptyList(), null);
+        SubscriberPage emptyResp = SubscriberPage.of(Collections.emptyList(), null);
         Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull())).thenReturn(emptyResp);
 
-        ResponseEntity<?> resp = controller.getSubscribers();
+        ResponseEntity<?> resp = controller.getSubscribers(null).join();
 
         assertEquals(HttpStatus.NOT_FOUND, resp.getStatusCode());
         assertEquals("No subscribers found.", resp.getBody());
@@ -60,25 +106,33 @@ public class KitApiControllerTest {
     @Test
     void whenEndCursorIsNull_noPagination_returnsEmails() {
         List<String> testEmails = Arrays.asList("a@example.com", "b@example.com");
-        KitApiSubscribersResponse mockedKitApiResp = new KitApiSubscribersResponse(testEmails, null);
+        SubscriberPage mockedKitApiResp = SubscriberPage.of(testEmails, null);
         Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull())).thenReturn(mockedKitApiResp);
 
-        ResponseEntity<?> resp = controller.getSubscribers();
+        ResponseEntity<?> resp = controller.getSubscribers(null).join();
 
         assertEquals(HttpStatus.OK, resp.getStatusCode());
         @SuppressWarnings("unchecked")
         List<String> body = (List<String>) resp.getBody();
         assertEquals(2, body.size());
         assertTrue(body.containsAll(testEmails));
+
+        // the same list again is a 304 for a client holding the ETag
+        String etag = resp.getHeaders().getETag();
+        assertTrue(etag.startsWith("W/\""));
+        ResponseEntity<?> unchanged = controller.getSubscribers(etag).join();
+        assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+        assertEquals(null, unchanged.getBody());
+        assertEquals(HttpStatus.OK, controller.getSubscribers("W/\"stale\"").join().getStatusCode());
     }
 
     @Test
     void whenEndCursorIsEmpty_noPagination_returnsEmails() {
         List<String> testEmails = Arrays.asList("x@x.com");
-        KitApiSubscribersResponse mockedKitApiResp = new KitApiSubscribersResponse(testEmails, "");
+        SubscriberPage mockedKitApiResp = SubscriberPage.of(testEmails, "");
         Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull())).thenReturn(mockedKitApiResp);
 
-        ResponseEntity<?> resp = controller.getSubscribers();
+        ResponseEntity<?> resp = controller.getSubscribers(null).join();
 
         assertEquals(HttpStatus.OK, resp.getStatusCode());
         @SuppressWarnings("unchecked")
@@ -92,14 +146,14 @@ public class KitApiControllerTest {
     void safetyCountExceeded_stopsAfterLimit_andAggregatesEmails() {
         // initial page
         List<String> initialRespEmails = Arrays.asList("first@page.com");
-        KitApiSubscribersResponse firstKitApiResp = new KitApiSubscribersResponse(initialRespEmails, "cursor0");
+        SubscriberPage firstKitApiResp = SubscriberPage.of(initialRespEmails, "cursor0");
         Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull())).thenReturn(firstKitApiResp);
 
-        // prepare 8 subsequent pages (safety limit is 8 in controller)
-        List<KitApiSubscribersResponse> pages = new ArrayList<>();
+        // prepare 8 subsequent pages (page budget is 8 in setUp)
+        List<SubscriberPage> pages = new ArrayList<>();
         for (int i = 1; i <= 8; i++) {
             //give each response a unique email and a non-empty end cursor
-            pages.add(new KitApiSubscribersResponse(
+            pages.add(SubscriberPage.of(
                 Arrays.asList("p" + i + "@example.com"),
                 "cursor" + i // non-empty so pagination would continue
             ));
@@ -109,9 +163,9 @@ public class KitApiControllerTest {
         AtomicInteger callCounter = new AtomicInteger(0);
         final int expectedPaginatedCalls = pages.size(); // 8
 
-        Answer<KitApiSubscribersResponse> pagedAnswer = new Answer<KitApiSubscribersResponse>() {
+        Answer<SubscriberPage> pagedAnswer = new Answer<SubscriberPage>() {
             @Override
-            public KitApiSubscribersResponse answer(InvocationOnMock invocation) {
+            public SubscriberPage answer(InvocationOnMock invocation) {
                 int idx = callCounter.getAndIncrement();
                 if (idx >= expectedPaginatedCalls) {
                     // Cause the controller to receive an exception (which will surface as a non-OK response).
@@ -123,7 +177,7 @@ public class KitApiControllerTest {
 
         Mockito.when(kitApiService.fetchSubscribers(Mockito.anyString())).thenAnswer(pagedAnswer);
 
-        ResponseEntity<?> resp = controller.getSubscribers();
+        ResponseEntity<?> resp = controller.getSubscribers(null).join();
 
         // If the controller exceeded the expected calls, the Answer threw and controller will return BAD_REQUEST.
         // Provide an informative assertion message so test fails visibly in that case.
@@ -141,13 +195,30 @@ public class KitApiControllerTest {
         assertEquals(expectedPaginatedCalls, callCounter.get(), "Unexpected number of paginated calls made");
     }
 
+    @Test
+    void repeatedCursor_stopsPagination() {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull()))
+            .thenReturn(SubscriberPage.of(Arrays.asList("a@example.com"), "cursor1"));
+        Mockito.when(kitApiService.fetchSubscribers("cursor1"))
+            .thenReturn(SubscriberPage.of(Arrays.asList("b@example.com"), "cursor2"));
+        // Kit points back at a page already fetched
+        Mockito.when(kitApiService.fetchSubscribers("cursor2"))
+            .thenReturn(SubscriberPage.of(Arrays.asList("c@example.com"), "cursor1"));
+
+        ResponseEntity<?> resp = controller.getSubscribers(null).join();
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertEquals(Arrays.asList("a@example.com", "b@example.com", "c@example.com"), resp.getBody());
+        Mockito.verify(kitApiService, Mockito.times(1)).fetchSubscribers("cursor1");
+    }
+
     @Test
     void happyPath_returnsProperlyConfiguredEmails() {
         List<String> testEmails = Arrays.asList("one@test.com", "two@test.com", "three@test.com");
-        KitApiSubscribersResponse mockedKitApiResp = new KitApiSubscribersResponse(testEmails, null);
+        SubscriberPage mockedKitApiResp = SubscriberPage.of(testEmails, null);
         Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull())).thenReturn(mockedKitApiResp);
 
-        ResponseEntity<?> resp = controller.getSubscribers();
+        ResponseEntity<?> resp = controller.getSubscribers(null).join();
 
         assertEquals(HttpStatus.OK, resp.getStatusCode());
         @SuppressWarnings("unchecked")
@@ -155,4 +226,241 @@ public class KitApiControllerTest {
         assertEquals(3, body.size());
         assertTrue(body.containsAll(testEmails));
     }
+
+    @Test
+    void streamSubscribers_writesEachPageAsNdjson() throws Exception {
+        SubscriberPage firstPage = SubscriberPage.of(Arrays.asList("a@example.com", "b@example.com"), "cursor1");
+        SubscriberPage secondPage = SubscriberPage.of(Arrays.asList("c@example.com"), "cursor2");
+        SubscriberPage lastPage = SubscriberPage.of(Collections.emptyList(), "cursor3");
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull())).thenReturn(firstPage);
+        Mockito.when(kitApiService.fetchSubscribers("cursor1")).thenReturn(secondPage);
+        Mockito.when(kitApiService.fetchSubscribers("cursor2")).thenReturn(lastPage);
+
+        ResponseEntity<?> resp = controller.streamSubscribers();
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) resp.getBody()).writeTo(out);
+        assertEquals("\"a@example.com\"\n\"b@example.com\"\n\"c@example.com\"\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportSubscribers_writesGzippedCsvWithDetailColumns() throws Exception {
+        SubscriberPage firstPage = new SubscriberPage();
+        firstPage.accept(1L, "a@example.com", "active", "2024-01-02T03:04:05Z");
+        firstPage.accept(2L, "b,c@example.com", "cancelled", null);
+        firstPage.setEndCursor("cursor1");
+        firstPage.setHasNextPage(true);
+        SubscriberPage lastPage = new SubscriberPage();
+        lastPage.accept(3L, "d@example.com", null, null);
+        lastPage.setHasNextPage(false);
+        // with the state column, subscribers in every state are asked for
+        Mockito.when(kitApiService.fetchSubscriberDetails(Mockito.isNull(), Mockito.eq(true))).thenReturn(firstPage);
+        Mockito.when(kitApiService.fetchSubscriberDetails("cursor1", true)).thenReturn(lastPage);
+
+        ResponseEntity<?> resp = controller.exportSubscribers("csv", "email,id,state,created_at");
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertEquals("attachment; filename=\"subscribers.csv.gz\"",
+            resp.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) resp.getBody()).writeTo(out);
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+            StandardCharsets.UTF_8);
+        assertEquals("email,id,state,created_at\r\n"
+            + "a@example.com,1,active,2024-01-02T03:04:05Z\r\n"
+            + "\"b,c@example.com\",2,cancelled,\r\n"
+            + "d@example.com,3,,\r\n", csv);
+        Mockito.verify(kitApiService, Mockito.never()).fetchSubscribers(Mockito.any());
+    }
+
+    @Test
+    void exportSubscribers_withoutTheStateColumn_asksOnlyForActiveSubscribers() throws Exception {
+        SubscriberPage page = new SubscriberPage();
+        page.accept(1L, "a@example.com", "active", "2024-01-02T03:04:05Z");
+        page.setHasNextPage(false);
+        Mockito.when(kitApiService.fetchSubscriberDetails(Mockito.isNull(), Mockito.eq(false))).thenReturn(page);
+
+        ResponseEntity<?> resp = controller.exportSubscribers("ndjson", "email,created_at");
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        Mockito.verify(kitApiService, Mockito.never()).fetchSubscriberDetails(Mockito.any(), Mockito.eq(true));
+    }
+
+    @Test
+    void exportSubscribers_unknownColumn_returnsBadRequest() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mockMvc.perform(post("/api/subscribers/export").param("format", "ndjson").param("columns", "email,phone"))
+            .andExpect(request().asyncNotStarted())
+            .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(kitApiService);
+    }
+
+    @Test
+    void streamSubscribers_throughMvc_streamsAsynchronously() throws Exception {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull()))
+            .thenReturn(SubscriberPage.of(Arrays.asList("a@example.com"), "cursor1"));
+        Mockito.when(kitApiService.fetchSubscribers("cursor1"))
+            .thenReturn(SubscriberPage.of(Arrays.asList("b@example.com"), null));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        MvcResult started = mockMvc.perform(post("/api/subscribers/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string("\"a@example.com\"\n\"b@example.com\"\n"));
+    }
+
+    @Test
+    void streamSubscribers_whenKitResponseIsNull_thenReturnsBadRequest() throws Exception {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull())).thenReturn(null);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mockMvc.perform(post("/api/subscribers/stream"))
+            .andExpect(request().asyncNotStarted())
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("No response from Kit API."));
+    }
+
+    @Test
+    void tagSubscribersFromCsv_normalisesAndDeduplicatesRows() {
+        String csv = "email\n A@Example.com \n\"b@example.com\"\na@example.com\n\n";
+        Mockito.when(kitApiService.tagSubscriber(Mockito.eq("3"), Mockito.anyString()))
+            .thenReturn(ResponseEntity.status(HttpStatus.CREATED).body("{}"));
+
+        ResponseEntity<?> resp = controller.tagSubscribersFromCsv("3",
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "all", false).join();
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = (Map<String, Object>) resp.getBody();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> csvCounts = (Map<String, Object>) body.get("csv");
+        assertEquals(5, csvCounts.get("rows"));
+        assertEquals(2, csvCounts.get("skipped"));
+        assertEquals(1, csvCounts.get("duplicates"));
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> details = (Map<String, Integer>) body.get("details");
+        assertEquals(2, details.get("success"));
+        Mockito.verify(kitApiService).tagSubscriber("3", "a@example.com");
+        Mockito.verify(kitApiService).tagSubscriber("3", "b@example.com");
+    }
+
+    @Test
+    void tagSubscribersFromCsvUpload_throughMvc_tagsAsynchronously() throws Exception {
+        Mockito.when(kitApiService.tagSubscriber(Mockito.eq("3"), Mockito.anyString()))
+            .thenReturn(ResponseEntity.status(HttpStatus.CREATED).body("{}"));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        MockMultipartFile file = new MockMultipartFile("file", "emails.csv", "text/csv",
+            "email\na@example.com\nb@example.com\n".getBytes(StandardCharsets.UTF_8));
+
+        MvcResult result = mockMvc.perform(multipart("/api/tag-subscribers/csv").file(file).param("tagId", "3"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.details.success").value(2))
+            .andExpect(jsonPath("$.csv.rows").value(3));
+    }
+
+    @Test
+    void tagSubscribers_failureDetailsOnly_listsFailedEmailsWithoutBodies() {
+        Mockito.when(kitApiService.tagSubscriber(Mockito.eq("3"), Mockito.anyString())).thenAnswer(invocation -> {
+            if (invocation.<String>getArgument(1).startsWith("missing")) {
+                throw new RuntimeException("404 Not Found");
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body("{\"subscriber\":{}}");
+        });
+        TagSubscribersRequest request = new TagSubscribersRequest();
+        request.setTagId("3");
+        request.setEmails(Arrays.asList("a@example.com", "missing@example.com", "b@example.com"));
+
+        ResponseEntity<?> resp = controller.tagSubscribers(request, "failures").join();
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, resp.getStatusCode());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = (Map<String, Object>) resp.getBody();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> emailDetails = (List<Map<String, Object>>) body.get("emailDetails");
+        assertEquals(1, emailDetails.size());
+        assertEquals("missing@example.com", emailDetails.get(0).get("email"));
+        assertEquals("404 Not Found", emailDetails.get(0).get("result"));
+
+        resp = controller.tagSubscribers(request, "all").join();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> all = (Map<String, Object>) resp.getBody();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> allDetails = (List<Map<String, Object>>) all.get("emailDetails");
+        assertEquals(3, allDetails.size());
+        assertEquals("a@example.com", allDetails.get(0).get("email"));
+        assertEquals(null, allDetails.get(0).get("result"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, controller.tagSubscribers(request, "some").join().getStatusCode());
+    }
+
+    @Test
+    void tagSubscribersBatch_appliesEveryTagOnceToEachUniqueEmail() {
+        Mockito.when(kitApiService.tagSubscriber(Mockito.anyString(), Mockito.anyString()))
+            .thenReturn(ResponseEntity.status(HttpStatus.CREATED).body("{}"));
+        Mockito.when(kitApiService.untagSubscriber(Mockito.eq("9"), Mockito.anyString())).thenAnswer(invocation -> {
+            if (invocation.<String>getArgument(1).startsWith("b")) {
+                throw new RuntimeException("404 Not Found");
+            }
+            return ResponseEntity.noContent().build();
+        });
+        TagBatchRequest request = new TagBatchRequest();
+        request.setEmails(Arrays.asList("A@example.com", "b@example.com", " a@example.com", ""));
+        request.setTagIds(Arrays.asList("3", "4", "3"));
+        request.setUntagIds(Arrays.asList("9"));
+
+        ResponseEntity<?> resp = controller.tagSubscribersBatch(request, "failures").join();
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, resp.getStatusCode());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = (Map<String, Object>) resp.getBody();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> emails = (Map<String, Object>) body.get("emails");
+        assertEquals(2, emails.get("unique"));
+        assertEquals(1, emails.get("duplicates"));
+        assertEquals(1, emails.get("blank"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> operations = (List<Map<String, Object>>) body.get("operations");
+        assertEquals(3, operations.size());
+        assertEquals("4", operations.get(1).get("tagId"));
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> tagCounts = (Map<String, Integer>) operations.get(1).get("details");
+        assertEquals(2, tagCounts.get("success"));
+        assertEquals("untag", operations.get(2).get("operation"));
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> untagCounts = (Map<String, Integer>) operations.get(2).get("details");
+        assertEquals(1, untagCounts.get("success"));
+        assertEquals(1, untagCounts.get("failed"));
+        Mockito.verify(kitApiService).tagSubscriber("3", "a@example.com");
+        Mockito.verify(kitApiService).tagSubscriber("4", "b@example.com");
+        Mockito.verify(kitApiService, Mockito.times(4)).tagSubscriber(Mockito.anyString(), Mockito.anyString());
+
+        request.setUntagIds(Arrays.asList("3"));
+        assertEquals(HttpStatus.BAD_REQUEST, controller.tagSubscribersBatch(request, "all").join().getStatusCode());
+    }
+
+    @Test
+    void diffSubscribers_splitsKnownUnknownAndDuplicates() {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull()))
+            .thenReturn(SubscriberPage.of(Arrays.asList("a@example.com", "b@example.com"), null));
+
+        ResponseEntity<?> resp = controller.diffSubscribers(
+            Arrays.asList(" A@example.com", "stranger@example.com", "a@example.com", "", "b@example.com")).join();
+
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> body = (Map<String, Object>) resp.getBody();
+        assertEquals(Arrays.asList("a@example.com", "b@example.com"), body.get("known"));
+        assertEquals(Arrays.asList("stranger@example.com"), body.get("unknown"));
+        assertEquals(Arrays.asList("a@example.com"), body.get("duplicates"));
+    }
 }
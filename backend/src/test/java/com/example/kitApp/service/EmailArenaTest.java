@@ -0,0 +1,105 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for EmailArena
+ */
+public class EmailArenaTest {
+
+    @Test
+    void addsEachEmailOnce_andKeepsInsertionOrder() {
+        EmailArena arena = new EmailArena();
+
+        assertTrue(arena.add("b@example.com"));
+        assertTrue(arena.add("a@example.com"));
+        assertTrue(arena.add("zoë@example.com"));
+        assertFalse(arena.add("b@example.com"));
+
+        assertEquals(3, arena.size());
+        assertTrue(arena.contains("zoë@example.com"));
+        assertFalse(arena.contains("B@example.com"));
+        assertEquals(Arrays.asList("b@example.com", "a@example.com", "zoë@example.com"), arena.asList());
+    }
+
+    @Test
+    void removals_andValues_matchAMap_acrossGrowthAndCompaction() {
+        EmailArena arena = new EmailArena(4);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            arena.put("user" + i + "@example.com", i + 1);
+            expected.put("user" + i + "@example.com", (long) i + 1);
+        }
+        for (int i = 0; i < 5000; i += 3) {
+            assertTrue(arena.remove("user" + i + "@example.com"));
+            expected.remove("user" + i + "@example.com");
+        }
+        arena.put("user1@example.com", 42);
+        expected.put("user1@example.com", 42L);
+
+        assertEquals(expected.size(), arena.size());
+        for (int i = 0; i < 5000; i++) {
+            String email = "user" + i + "@example.com";
+            assertEquals(expected.containsKey(email), arena.contains(email), email);
+            assertEquals(expected.getOrDefault(email, 0L), arena.getValue(email), email);
+        }
+        List<String> order = new ArrayList<>();
+        arena.forEach((email, value) -> order.add(email));
+        assertEquals("user1@example.com", order.get(0));
+        assertEquals(expected.size(), order.size());
+    }
+
+    @Test
+    void copyOfAnEmptyFrozenArena_acceptsNewEmails() {
+        EmailArena copy = new EmailArena().freeze().copy();
+
+        assertTrue(copy.put("a@example.com", 1));
+        assertTrue(copy.put("b@example.com", 2));
+
+        assertEquals(Arrays.asList("a@example.com", "b@example.com"), copy.asList());
+        assertEquals(2, copy.getValue("b@example.com"));
+    }
+
+    @Test
+    void frozenArena_isReadOnly_andCopiesAreIndependent() {
+        EmailArena arena = new EmailArena();
+        arena.add("a@example.com");
+        arena.add("b@example.com");
+        arena.freeze();
+
+        assertThrows(UnsupportedOperationException.class, () -> arena.add("c@example.com"));
+        EmailArena copy = arena.copy();
+        copy.remove("a@example.com");
+        copy.add("c@example.com");
+
+        assertEquals(Arrays.asList("a@example.com", "b@example.com"), arena.asList());
+        assertEquals(Arrays.asList("b@example.com", "c@example.com"), copy.asList());
+    }
+
+    @Test
+    void views_serialiseAsJsonArrays() throws Exception {
+        EmailArena arena = new EmailArena();
+        arena.add("a@example.com");
+        arena.add("quote\"d@example.com");
+        ObjectMapper mapper = new ObjectMapper();
+        String expected = "[\"a@example.com\",\"quote\\\"d@example.com\"]";
+
+        // bytes, as for an HTTP response, and characters
+        assertEquals(expected, new String(mapper.writeValueAsBytes(arena.asList()), StandardCharsets.UTF_8));
+        assertEquals("{\"emails\":" + expected + "}", mapper.writeValueAsString(Map.of("emails", arena.freeze().asSet())));
+    }
+}
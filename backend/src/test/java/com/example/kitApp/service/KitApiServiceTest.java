@@ -0,0 +1,121 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.kitApp.context.KitApiKeyContext;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Tests for KitApiService's retries
+ */
+@ExtendWith(MockitoExtension.class)
+public class KitApiServiceTest {
+
+    private static final String TAG_URL = "http://kit.test/tags/7/subscribers";
+
+    @Mock
+    private RestTemplateBuilder restTemplateBuilder;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private KitApiService kitApiService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Mockito.when(restTemplateBuilder.requestFactory(Mockito.any(Supplier.class))).thenReturn(restTemplateBuilder);
+        Mockito.when(restTemplateBuilder.build()).thenReturn(restTemplate);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // 3 attempts, 1ms initial backoff, 5 second deadline; the rate limit is high enough never to wait long
+        kitApiService = new KitApiService(restTemplateBuilder, Mockito.mock(ClientHttpRequestFactory.class),
+            new KitRateLimiter(60_000, 100, Duration.ofMinutes(10)),
+            new KitCallGuard(meterRegistry, 4, Duration.ofSeconds(1), 10, Duration.ofSeconds(30), Duration.ofMinutes(10)),
+            meterRegistry, 3, Duration.ofMillis(1), Duration.ofMillis(10), Duration.ofSeconds(5), 1000, "http://kit.test");
+        KitApiKeyContext.setApiKey("test-key");
+    }
+
+    @AfterEach
+    void tearDown() {
+        KitApiKeyContext.clear();
+    }
+
+    @Test
+    void throttledCall_waitsForRetryAfter_thenSucceeds() {
+        Mockito.when(restTemplate.exchange(Mockito.eq(TAG_URL), Mockito.eq(HttpMethod.POST), Mockito.<HttpEntity<?>>any(),
+                Mockito.eq(String.class)))
+            .thenThrow(throttled("1"))
+            .thenReturn(ResponseEntity.status(HttpStatus.CREATED).body("{}"));
+
+        long start = System.nanoTime();
+        ResponseEntity<String> response = kitApiService.tagSubscriber("7", "a@example.com");
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(900).toNanos(), "retried before Retry-After");
+        Mockito.verify(restTemplate, Mockito.times(2))
+            .exchange(Mockito.eq(TAG_URL), Mockito.eq(HttpMethod.POST), Mockito.<HttpEntity<?>>any(), Mockito.eq(String.class));
+    }
+
+    @Test
+    void retryAfterPastTheDeadline_failsWithoutWaiting() {
+        Mockito.when(restTemplate.exchange(Mockito.eq(TAG_URL), Mockito.eq(HttpMethod.POST), Mockito.<HttpEntity<?>>any(),
+                Mockito.eq(String.class)))
+            .thenThrow(throttled("120"));
+
+        long start = System.nanoTime();
+        HttpStatusCodeException e = assertThrows(HttpStatusCodeException.class,
+            () -> kitApiService.tagSubscriber("7", "a@example.com"));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos(), "waited for a retry past the deadline");
+        Mockito.verify(restTemplate, Mockito.times(1))
+            .exchange(Mockito.eq(TAG_URL), Mockito.eq(HttpMethod.POST), Mockito.<HttpEntity<?>>any(), Mockito.eq(String.class));
+    }
+
+    @Test
+    void serverErrors_areRetriedUpToMaxAttempts() {
+        Mockito.when(restTemplate.exchange(Mockito.eq(TAG_URL), Mockito.eq(HttpMethod.POST), Mockito.<HttpEntity<?>>any(),
+                Mockito.eq(String.class)))
+            .thenThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable",
+                HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8));
+
+        HttpStatusCodeException e = assertThrows(HttpStatusCodeException.class,
+            () -> kitApiService.tagSubscriber("7", "a@example.com"));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        Mockito.verify(restTemplate, Mockito.times(3))
+            .exchange(Mockito.eq(TAG_URL), Mockito.eq(HttpMethod.POST), Mockito.<HttpEntity<?>>any(), Mockito.eq(String.class));
+    }
+
+    private static HttpClientErrorException throttled(String retryAfterSeconds) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        return HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", headers,
+            new byte[0], StandardCharsets.UTF_8);
+    }
+}
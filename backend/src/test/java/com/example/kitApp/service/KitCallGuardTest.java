@@ -0,0 +1,123 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for KitCallGuard
+ */
+public class KitCallGuardTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final AtomicLong now = new AtomicLong(0);
+    private KitCallGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        // 2 calls per key, opens after 3 failures in a row for 30 seconds, forgets keys idle for a minute
+        guard = new KitCallGuard(new SimpleMeterRegistry(), 2, Duration.ZERO, 3, Duration.ofSeconds(30),
+            Duration.ofMinutes(1), now::get);
+    }
+
+    @Test
+    void consecutiveFailures_openTheCircuit_forThatKeyOnly() {
+        guard.onFailure("k");
+        guard.onSuccess("k");
+        guard.onFailure("k");
+        guard.onFailure("k");
+        guard.beforeCall("k");
+        guard.onFailure("k");
+
+        assertEquals(KitCallGuard.CircuitState.OPEN, guard.status("k").getCircuit());
+        assertEquals(30_000, guard.status("k").getRetryInMillis());
+        assertThrows(KitUnavailableException.class, () -> guard.beforeCall("k"));
+        guard.beforeCall("other");
+    }
+
+    @Test
+    void afterOpenFor_oneTrialIsLetThrough_andItsOutcomeDecides() {
+        for (int i = 0; i < 3; i++) {
+            guard.onFailure("k");
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        guard.beforeCall("k");
+        assertEquals(KitCallGuard.CircuitState.HALF_OPEN, guard.status("k").getCircuit());
+        assertThrows(KitUnavailableException.class, () -> guard.beforeCall("k"));
+        guard.onFailure("k");
+        assertEquals(KitCallGuard.CircuitState.OPEN, guard.status("k").getCircuit());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        guard.beforeCall("k");
+        guard.onSuccess("k");
+        assertEquals(KitCallGuard.CircuitState.CLOSED, guard.status("k").getCircuit());
+        guard.beforeCall("k");
+    }
+
+    @Test
+    void fullBulkhead_turnsCallersAway_untilAPermitIsReleased() {
+        guard.acquire("k", NO_DEADLINE);
+        guard.acquire("k", NO_DEADLINE);
+
+        assertEquals(2, guard.status("k").getCallsInFlight());
+        assertThrows(KitUnavailableException.class, () -> guard.acquire("k", NO_DEADLINE));
+        guard.acquire("other", NO_DEADLINE);
+
+        guard.release("k");
+        guard.acquire("k", NO_DEADLINE);
+    }
+
+    @Test
+    void idleKeysWithAClosedCircuit_areForgotten_butOpenOrBusyOnesAreKept() {
+        call("idle", false);
+        call("idle", false);
+        for (int i = 0; i < 3; i++) {
+            call("broken", false);
+        }
+        guard.acquire("busy", NO_DEADLINE);
+        guard.onFailure("busy");
+        guard.onFailure("busy");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        call("other", true);
+        assertEquals(2, guard.status("idle").getConsecutiveFailures());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        call("other", true);
+
+        assertEquals(0, guard.status("idle").getConsecutiveFailures());
+        assertEquals(KitCallGuard.CircuitState.OPEN, guard.status("broken").getCircuit());
+        assertEquals(2, guard.status("busy").getConsecutiveFailures());
+        assertEquals(1, guard.status("busy").getCallsInFlight());
+
+        // the busy key's permit goes back to the same bulkhead it came from
+        guard.release("busy");
+        guard.acquire("busy", NO_DEADLINE);
+        guard.acquire("busy", NO_DEADLINE);
+        assertThrows(KitUnavailableException.class, () -> guard.acquire("busy", NO_DEADLINE));
+    }
+
+    private void call(String key, boolean succeeds) {
+        guard.acquire(key, NO_DEADLINE);
+        try {
+            guard.beforeCall(key);
+            if (succeeds) {
+                guard.onSuccess(key);
+            } else {
+                guard.onFailure(key);
+            }
+        } finally {
+            guard.release(key);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for KitRateLimiter
+ */
+public class KitRateLimiterTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final AtomicLong now = new AtomicLong(0);
+    private KitRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        // 60 per minute = 1 per second, burst of 2, buckets forgotten after a minute unused
+        rateLimiter = new KitRateLimiter(60, 2, Duration.ofMinutes(1), now::get);
+    }
+
+    @Test
+    void burstIsFree_thenCallsAreSpacedByTheRate() {
+        assertEquals(0, rateLimiter.reserve("k", NO_DEADLINE));
+        assertEquals(0, rateLimiter.reserve("k", NO_DEADLINE));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), rateLimiter.reserve("k", NO_DEADLINE));
+        assertEquals(TimeUnit.SECONDS.toNanos(2), rateLimiter.reserve("k", NO_DEADLINE));
+        // other keys have their own bucket
+        assertEquals(0, rateLimiter.reserve("other", NO_DEADLINE));
+    }
+
+    @Test
+    void throttling_pausesForRetryAfter_andHalvesTheRate() {
+        rateLimiter.reserve("k", NO_DEADLINE);
+        rateLimiter.onThrottled("k", Duration.ofSeconds(5));
+
+        assertEquals(30.0, rateLimiter.currentRatePerMinute("k"), 0.001);
+        assertTrue(rateLimiter.reserve("k", NO_DEADLINE) >= TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void reservationPastDeadline_isRefused() {
+        rateLimiter.onThrottled("k", Duration.ofSeconds(30));
+
+        assertThrows(KitRateLimitException.class, () -> rateLimiter.reserve("k", TimeUnit.SECONDS.toNanos(10)));
+    }
+
+    @Test
+    void headers_capRemainingTokens_andSetTheCeiling() {
+        rateLimiter.reserve("k", NO_DEADLINE);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-RateLimit-Limit", "30");
+        headers.set("X-RateLimit-Remaining", "0");
+        headers.set("X-RateLimit-Reset", "4");
+        rateLimiter.onResponse("k", headers);
+
+        assertEquals(30.0, rateLimiter.currentRatePerMinute("k"), 0.001);
+        assertTrue(rateLimiter.reserve("k", NO_DEADLINE) >= TimeUnit.SECONDS.toNanos(4));
+    }
+
+    @Test
+    void idleFullBuckets_areForgotten_butPausedOnesAreKept() {
+        rateLimiter.reserve("idle", NO_DEADLINE);
+        rateLimiter.onThrottled("idle", null);
+        rateLimiter.reserve("paused", NO_DEADLINE);
+        rateLimiter.onThrottled("paused", Duration.ofMinutes(5));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        rateLimiter.reserve("other", NO_DEADLINE);
+        assertEquals(30.0, rateLimiter.currentRatePerMinute("idle"), 0.001);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        rateLimiter.reserve("other", NO_DEADLINE);
+
+        // the idle key starts over at the configured rate; the paused one is still slowed and paused
+        assertEquals(60.0, rateLimiter.currentRatePerMinute("idle"), 0.001);
+        assertEquals(0, rateLimiter.reserve("idle", NO_DEADLINE));
+        assertEquals(30.0, rateLimiter.currentRatePerMinute("paused"), 0.001);
+        assertTrue(rateLimiter.reserve("paused", NO_DEADLINE) >= TimeUnit.SECONDS.toNanos(4 * 60));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.kitApp.context.KitApiKeyContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for KitRequestExecutor
+ */
+public class KitRequestExecutorTest {
+
+    private final KitRequestExecutor executor = new KitRequestExecutor(1, 1);
+
+    @AfterEach
+    void tearDown() {
+        KitApiKeyContext.clear();
+        executor.shutdown();
+    }
+
+    @Test
+    void supply_runsWithTheSubmittingRequestsKey_andLeavesThePoolThreadClean() throws Exception {
+        KitApiKeyContext.setApiKey("key-a");
+        assertEquals("key-a", executor.supply(KitApiKeyContext::getApiKey).get(5, TimeUnit.SECONDS));
+
+        KitApiKeyContext.setApiKey("key-b");
+        assertEquals("key-b", executor.supply(KitApiKeyContext::getApiKey).get(5, TimeUnit.SECONDS));
+
+        KitApiKeyContext.clear();
+        assertNull(executor.supply(KitApiKeyContext::getApiKey).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void supply_whenThreadsAndQueueAreFull_failsWithRejectedExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = executor.supply(() -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = executor.supply(() -> "queued");
+
+        CompletableFuture<String> refused = executor.supply(() -> "refused");
+        ExecutionException e = assertThrows(ExecutionException.class, refused::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.KitApiBulkTagResponse;
+import com.example.kitApp.model.TagOutcome;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for KitTaggingService
+ */
+@ExtendWith(MockitoExtension.class)
+public class KitTaggingServiceTest {
+
+    @Mock
+    private KitApiService kitApiService;
+
+    @Mock
+    private SubscriberSnapshotCache subscriberSnapshotCache;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TagMembershipCache tagMembershipCache;
+    private KitTaggingService taggingService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tagMembershipCache = new TagMembershipCache(kitApiService, new SubscriberPager(0, 1, 1), true, false, Duration.ofHours(6), 10);
+        taggingService = new KitTaggingService(kitApiService, subscriberSnapshotCache, tagMembershipCache, meterRegistry, 3, 8, false, 100, false);
+        KitApiKeyContext.setApiKey("test-key");
+    }
+
+    @AfterEach
+    void tearDown() {
+        taggingService.shutdown();
+        KitApiKeyContext.clear();
+    }
+
+    @Test
+    void outcomesKeepInputOrder_andClassifyStatuses() {
+        Mockito.when(kitApiService.tagSubscriber(Mockito.eq("7"), Mockito.anyString())).thenAnswer(invocation -> {
+            String email = invocation.getArgument(1);
+            if (email.startsWith("new")) {
+                return ResponseEntity.status(HttpStatus.CREATED).body("created");
+            } else if (email.startsWith("old")) {
+                return ResponseEntity.ok("exists");
+            }
+            throw new RuntimeException("404 Not Found");
+        });
+
+        List<String> emails = Arrays.asList("new1@a.com", "old1@a.com", "missing@a.com", "new2@a.com");
+        List<TagOutcome> outcomes = tagAll(taggingService, "7", emails);
+
+        assertEquals(4, outcomes.size());
+        for (int i = 0; i < emails.size(); i++) {
+            assertEquals(emails.get(i), outcomes.get(i).getEmail());
+        }
+        assertEquals(TagOutcome.Result.TAGGED, outcomes.get(0).getResult());
+        assertEquals(TagOutcome.Result.ALREADY_TAGGED, outcomes.get(1).getResult());
+        assertEquals(TagOutcome.Result.FAILED, outcomes.get(2).getResult());
+        assertEquals("404 Not Found", outcomes.get(2).getBody());
+        assertEquals(201, outcomes.get(3).getStatus());
+
+        assertEquals(2, meterRegistry.counter("kit.tagging.outcomes", "result", "TAGGED").count());
+        assertEquals(1, meterRegistry.counter("kit.tagging.outcomes", "result", "ALREADY_TAGGED").count());
+        assertEquals(1, meterRegistry.counter("kit.tagging.outcomes", "result", "FAILED").count());
+        assertEquals(0, meterRegistry.get("kit.tagging.in-flight").gauge().value());
+    }
+
+    @Test
+    void workersSeeApiKey_andInFlightCallsStayWithinLimit() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        Set<String> keysSeen = ConcurrentHashMap.newKeySet();
+
+        Mockito.when(kitApiService.tagSubscriber(Mockito.anyString(), Mockito.anyString())).thenAnswer(invocation -> {
+            keysSeen.add(String.valueOf(KitApiKeyContext.getApiKey()));
+            int now = inFlight.incrementAndGet();
+            maxSeen.accumulateAndGet(now, Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).body("ok");
+        });
+
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            emails.add("user" + i + "@example.com");
+        }
+        List<TagOutcome> outcomes = tagAll(taggingService, "1", emails);
+
+        assertEquals(40, outcomes.size());
+        assertTrue(outcomes.stream().allMatch(o -> o.getResult() == TagOutcome.Result.TAGGED));
+        assertEquals(Set.of("test-key"), keysSeen);
+        assertTrue(maxSeen.get() <= 3, "In-flight calls exceeded per-key limit: " + maxSeen.get());
+    }
+
+    @Test
+    void bulkEnabled_tagsKnownSubscribersInBatches_andUnknownOnesByEmail() throws Exception {
+        KitTaggingService bulkService = new KitTaggingService(kitApiService, subscriberSnapshotCache, tagMembershipCache,
+            meterRegistry, 3, 8, true, 2, false);
+        try {
+            Map<String, Long> ids = new HashMap<>();
+            ids.put("a@example.com", 1L);
+            ids.put("b@example.com", 2L);
+            ids.put("c@example.com", 3L);
+            Mockito.when(subscriberSnapshotCache.getSubscriberIds("test-key")).thenReturn(ids);
+
+            KitApiBulkTagResponse noFailures = new ObjectMapper().readValue("{\"failures\":[]}", KitApiBulkTagResponse.class);
+            KitApiBulkTagResponse oneFailure = new ObjectMapper().readValue(
+                "{\"failures\":[{\"tagging\":{\"tag_id\":9,\"subscriber_id\":3},\"errors\":[\"Tag does not exist\"]}]}",
+                KitApiBulkTagResponse.class);
+            Mockito.when(kitApiService.bulkTagSubscribers("9", Arrays.asList(1L, 2L))).thenReturn(ResponseEntity.ok(noFailures));
+            Mockito.when(kitApiService.bulkTagSubscribers("9", Arrays.asList(3L))).thenReturn(ResponseEntity.ok(oneFailure));
+            Mockito.when(kitApiService.tagSubscriber("9", "unknown@example.com"))
+                .thenThrow(new RuntimeException("422 Unprocessable Entity"));
+
+            List<TagOutcome> outcomes = tagAll(bulkService, "9",
+                Arrays.asList("A@example.com", "unknown@example.com", "b@example.com", "c@example.com"));
+
+            assertEquals(TagOutcome.Result.TAGGED, outcomes.get(0).getResult());
+            assertEquals("A@example.com", outcomes.get(0).getEmail());
+            assertEquals(TagOutcome.Result.FAILED, outcomes.get(1).getResult());
+            assertEquals(TagOutcome.Result.TAGGED, outcomes.get(2).getResult());
+            assertEquals(TagOutcome.Result.FAILED, outcomes.get(3).getResult());
+            assertEquals("[Tag does not exist]", outcomes.get(3).getBody());
+            Mockito.verify(kitApiService, Mockito.never()).tagSubscriber("9", "b@example.com");
+        } finally {
+            bulkService.shutdown();
+        }
+    }
+
+    @Test
+    void knownTaggedEmails_areAnsweredWithoutCallingKit() {
+        Mockito.when(kitApiService.tagSubscriber(Mockito.eq("7"), Mockito.anyString())).thenAnswer(invocation -> {
+            String email = invocation.getArgument(1);
+            if (email.startsWith("old")) {
+                return ResponseEntity.ok("exists");
+            }
+            if (email.startsWith("missing")) {
+                throw new RuntimeException("404 Not Found");
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body("created");
+        });
+        tagAll(taggingService, "7", Arrays.asList("new@a.com", "old@a.com", "missing@a.com"));
+
+        List<TagOutcome> outcomes = tagAll(taggingService, "7", Arrays.asList("NEW@a.com", "old@a.com", "missing@a.com", "other@a.com"));
+
+        assertEquals(TagOutcome.Result.ALREADY_TAGGED, outcomes.get(0).getResult());
+        assertEquals("NEW@a.com", outcomes.get(0).getEmail());
+        assertEquals(TagOutcome.Result.ALREADY_TAGGED, outcomes.get(1).getResult());
+        assertEquals(TagOutcome.Result.FAILED, outcomes.get(2).getResult());
+        assertEquals(TagOutcome.Result.TAGGED, outcomes.get(3).getResult());
+        Mockito.verify(kitApiService, Mockito.times(1)).tagSubscriber("7", "old@a.com");
+        Mockito.verify(kitApiService, Mockito.times(2)).tagSubscriber("7", "missing@a.com");
+        assertEquals(2, meterRegistry.counter("kit.tagging.known-tagged").count());
+
+        // the same emails under another tag are still sent
+        tagAll(taggingService, "8", Arrays.asList("new@a.com"));
+        Mockito.verify(kitApiService).tagSubscriber("8", "new@a.com");
+    }
+
+    @Test
+    void skipUnknown_failsNonSubscribersWithoutCallingKit() {
+        KitTaggingService skipping = new KitTaggingService(kitApiService, subscriberSnapshotCache, tagMembershipCache,
+            meterRegistry, 3, 8, false, 100, true);
+        try {
+            Mockito.when(subscriberSnapshotCache.getSubscriberEmailSet("test-key")).thenReturn(Set.of("a@example.com"));
+            Mockito.when(kitApiService.tagSubscriber("2", "A@example.com"))
+                .thenReturn(ResponseEntity.status(HttpStatus.CREATED).body("created"));
+
+            List<TagOutcome> outcomes = tagAll(skipping, "2", Arrays.asList("A@example.com", "stranger@example.com"));
+
+            assertEquals(TagOutcome.Result.TAGGED, outcomes.get(0).getResult());
+            assertEquals(TagOutcome.Result.FAILED, outcomes.get(1).getResult());
+            assertEquals(404, outcomes.get(1).getStatus());
+            Mockito.verify(kitApiService, Mockito.never()).tagSubscriber("2", "stranger@example.com");
+            assertEquals(1, meterRegistry.counter("kit.tagging.unknown-skipped").count());
+        } finally {
+            skipping.shutdown();
+        }
+    }
+
+    /**
+     * Tags the emails with the current request's key, collecting the outcomes in input order from the sink.
+     */
+    private static List<TagOutcome> tagAll(KitTaggingService service, String tagId, List<String> emails) {
+        TagOutcome[] outcomes = new TagOutcome[emails.size()];
+        service.tagAll(KitApiKeyContext.getApiKey(), tagId, emails, (outcome, index) -> outcomes[index] = outcome);
+        return Arrays.asList(outcomes);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for SingleFlight
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Test
+    void concurrentCallsWithSameKey_shareOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object result = new Object();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Object> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return result;
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            List<Future<Object>> followers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                followers.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    calls.incrementAndGet();
+                    return new Object();
+                })));
+            }
+            // give the followers time to join the leader's call
+            Thread.sleep(100);
+            release.countDown();
+
+            assertSame(result, leader.get(5, TimeUnit.SECONDS));
+            for (Future<Object> follower : followers) {
+                assertSame(result, follower.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+            assertEquals(0, singleFlight.inFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failures_arePassedOn_andNotRemembered() {
+        assertThrows(IllegalStateException.class,
+            () -> singleFlight.execute("key", () -> { throw new IllegalStateException("boom"); }));
+
+        assertEquals("ok", singleFlight.execute("key", () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
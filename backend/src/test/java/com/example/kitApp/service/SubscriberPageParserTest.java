@@ -0,0 +1,74 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.kitApp.model.SubscriberPage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for SubscriberPageParser
+ */
+public class SubscriberPageParserTest {
+
+    @Test
+    void nestedValues_areSkippedWhole_notReadAsSubscriberFields() throws IOException {
+        SubscriberPage page = parse("{\"subscribers\":["
+            + "{\"id\":{\"id\":99,\"email_address\":\"inner@example.com\"},\"email_address\":\"a@example.com\",\"state\":\"active\"},"
+            + "{\"id\":2,\"email_address\":[\"x@example.com\",{\"state\":\"cancelled\"}],\"state\":\"cancelled\"},"
+            + "{\"fields\":{\"email_address\":\"custom@example.com\",\"state\":\"bounced\"},\"id\":3,\"email_address\":\"c@example.com\"}"
+            + "],\"pagination\":{\"end_cursor\":{\"nested\":\"cursor\"},\"has_next_page\":true}}");
+
+        assertEquals(3, page.size());
+        assertEquals(0L, page.getId(0));
+        assertEquals("a@example.com", page.getEmail(0));
+        assertTrue(page.isActive(0));
+        assertEquals(2L, page.getId(1));
+        assertNull(page.getEmail(1));
+        assertFalse(page.isActive(1));
+        assertEquals(3L, page.getId(2));
+        assertEquals("c@example.com", page.getEmail(2));
+        assertTrue(page.isActive(2));
+        assertNull(page.getEndCursor());
+        assertEquals(Boolean.TRUE, page.getHasNextPage());
+    }
+
+    @Test
+    void unknownFields_areIgnored() throws IOException {
+        SubscriberPage page = parse("{\"meta\":{\"subscribers\":[{\"email_address\":\"meta@example.com\"}]},"
+            + "\"subscribers\":[{\"first_name\":\"A\",\"id\":1,\"tags\":[1,2],\"email_address\":\"a@example.com\",\"extra\":null}],"
+            + "\"pagination\":{\"start_cursor\":\"s\",\"end_cursor\":\"e\",\"per_page\":1000,\"has_next_page\":false}}");
+
+        assertEquals(1, page.size());
+        assertEquals(1L, page.getId(0));
+        assertEquals("a@example.com", page.getEmail(0));
+        assertEquals("e", page.getEndCursor());
+        assertEquals(Boolean.FALSE, page.getHasNextPage());
+    }
+
+    @Test
+    void missingFields_fallBackToDefaults() throws IOException {
+        SubscriberPage page = parse("{\"subscribers\":[{\"id\":5},{}]}");
+
+        assertEquals(2, page.size());
+        assertEquals(5L, page.getId(0));
+        assertNull(page.getEmail(0));
+        // no state means active
+        assertTrue(page.isActive(0));
+        assertEquals(0L, page.getId(1));
+        assertNull(page.getEndCursor());
+        assertNull(page.getHasNextPage());
+        assertNull(SubscriberPageParser.parse(new ByteArrayInputStream(new byte[0])));
+    }
+
+    private static SubscriberPage parse(String json) throws IOException {
+        return SubscriberPageParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
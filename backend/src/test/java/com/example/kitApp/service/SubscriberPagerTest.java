@@ -0,0 +1,101 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.SubscriberPage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for SubscriberPager
+ */
+public class SubscriberPagerTest {
+
+    // one prefetch thread shared by every walk
+    private final SubscriberPager pager = new SubscriberPager(0, 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        KitApiKeyContext.clear();
+        pager.shutdown();
+    }
+
+    @Test
+    void forEachFollowingPage_handsOverEveryPageInOrder() throws Exception {
+        KitApiKeyContext.setApiKey("key-a");
+        List<String> emails = new ArrayList<>();
+
+        boolean complete = pager.forEachFollowingPage(SubscriberPage.of(Arrays.asList("1@example.com"), "c1"),
+            cursor -> switch (cursor) {
+                case "c1" -> SubscriberPage.of(Arrays.asList("2@example.com"), "c2");
+                case "c2" -> SubscriberPage.of(Arrays.asList("3@example.com"), "c3");
+                default -> SubscriberPage.of(Collections.emptyList(), null);
+            },
+            page -> emails.add(page.getEmail(0)));
+
+        assertTrue(complete);
+        assertEquals(Arrays.asList("2@example.com", "3@example.com"), emails);
+    }
+
+    @Test
+    void slowWalkForOneKey_doesNotHoldUpAnotherKeysWalk() throws Exception {
+        CountDownLatch slowFetchStarted = new CountDownLatch(1);
+        CountDownLatch releaseSlowFetch = new CountDownLatch(1);
+
+        // key A's read-ahead of page a2 takes the only prefetch thread and hangs there
+        CompletableFuture<Boolean> slowWalk = CompletableFuture.supplyAsync(() -> {
+            KitApiKeyContext.setApiKey("key-a");
+            try {
+                return pager.forEachFollowingPage(SubscriberPage.of(Arrays.asList("a0@example.com"), "a1"),
+                    cursor -> {
+                        if (cursor.equals("a1")) {
+                            return SubscriberPage.of(Arrays.asList("a1@example.com"), "a2");
+                        }
+                        slowFetchStarted.countDown();
+                        try {
+                            releaseSlowFetch.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return SubscriberPage.of(Collections.emptyList(), null);
+                    },
+                    page -> { });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                KitApiKeyContext.clear();
+            }
+        });
+        assertTrue(slowFetchStarted.await(5, TimeUnit.SECONDS));
+
+        // key B finds no free prefetch thread and pages on its own thread instead of queueing
+        KitApiKeyContext.setApiKey("key-b");
+        List<String> emails = new ArrayList<>();
+        boolean complete = pager.forEachFollowingPage(SubscriberPage.of(Arrays.asList("b0@example.com"), "b1"),
+            cursor -> switch (cursor) {
+                case "b1" -> SubscriberPage.of(Arrays.asList("b1@example.com"), "b2");
+                case "b2" -> SubscriberPage.of(Arrays.asList("b2@example.com"), "b3");
+                default -> SubscriberPage.of(Collections.emptyList(), null);
+            },
+            page -> emails.add(page.getEmail(0)));
+
+        assertTrue(complete);
+        assertEquals(Arrays.asList("b1@example.com", "b2@example.com"), emails);
+        assertFalse(slowWalk.isDone());
+
+        releaseSlowFetch.countDown();
+        assertTrue(slowWalk.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.SubscriberPage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Tests for SubscriberSnapshotCache
+ */
+@ExtendWith(MockitoExtension.class)
+public class SubscriberSnapshotCacheTest {
+
+    @Mock
+    private KitApiService kitApiService;
+
+    private MutableClock clock;
+    private SubscriberSnapshotCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-06-10T12:00:00Z"));
+        cache = new SubscriberSnapshotCache(kitApiService, new SubscriberPager(0, 1, 1), new SimpleMeterRegistry(),
+            Duration.ofMinutes(1), Duration.ofMinutes(30), 2, clock);
+        KitApiKeyContext.setApiKey("key-a");
+    }
+
+    @AfterEach
+    void tearDown() {
+        KitApiKeyContext.clear();
+    }
+
+    @Test
+    void freshSnapshot_isServedWithoutCallingKit() {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull()))
+            .thenReturn(SubscriberPage.of(Arrays.asList("a@example.com", "b@example.com"), null));
+
+        assertEquals(Arrays.asList("a@example.com", "b@example.com"), cache.getSubscriberList().getEmails());
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals(Arrays.asList("a@example.com", "b@example.com"), cache.getSubscriberList().getEmails());
+
+        Mockito.verify(kitApiService, Mockito.times(1)).fetchSubscribers(Mockito.isNull());
+        Mockito.verifyNoMoreInteractions(kitApiService);
+    }
+
+    @Test
+    void staleSnapshot_mergesOnlyUpdatedSubscribers() throws Exception {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull()))
+            .thenReturn(SubscriberPage.of(Arrays.asList("a@example.com", "b@example.com"), null));
+        cache.getSubscriberList().getEmails();
+
+        SubscriberPage changes = SubscriberPageParser.parse(new ByteArrayInputStream((
+            "{\"subscribers\":["
+                + "{\"id\":2,\"email_address\":\"b@example.com\",\"state\":\"cancelled\",\"fields\":{\"a\":[1]}},"
+                + "{\"id\":3,\"email_address\":\"c@example.com\",\"state\":\"active\"}],"
+                + "\"pagination\":{\"end_cursor\":null}}").getBytes(StandardCharsets.UTF_8)));
+        Mockito.when(kitApiService.fetchSubscribersUpdatedAfter(LocalDate.of(2025, 6, 9), null)).thenReturn(changes);
+
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals(Arrays.asList("a@example.com", "c@example.com"), cache.getSubscriberList().getEmails());
+        assertEquals(Map.of("c@example.com", 3L), cache.getSubscriberIds("key-a"));
+
+        // the full list was only walked once
+        Mockito.verify(kitApiService, Mockito.times(1)).fetchSubscribers(Mockito.isNull());
+    }
+
+    @Test
+    void staleEmptySnapshot_takesInNewSubscribers() {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull()))
+            .thenReturn(SubscriberPage.of(Collections.emptyList(), null));
+        assertEquals(Collections.emptyList(), cache.getSubscriberList().getEmails());
+
+        Mockito.when(kitApiService.fetchSubscribersUpdatedAfter(LocalDate.of(2025, 6, 9), null))
+            .thenReturn(SubscriberPage.of(Arrays.asList("a@example.com"), null));
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals(Arrays.asList("a@example.com"), cache.getSubscriberList().getEmails());
+
+        // the refresh succeeded, so the next request within refresh-after is served from the cache
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals(Arrays.asList("a@example.com"), cache.getSubscriberList().getEmails());
+        Mockito.verify(kitApiService, Mockito.times(1)).fetchSubscribersUpdatedAfter(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void expiredSnapshot_isReloadedInFull() {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull()))
+            .thenReturn(SubscriberPage.of(Arrays.asList("a@example.com"), null))
+            .thenReturn(SubscriberPage.of(Arrays.asList("z@example.com"), null));
+        cache.getSubscriberList().getEmails();
+
+        clock.advance(Duration.ofHours(1));
+        assertEquals(Arrays.asList("z@example.com"), cache.getSubscriberList().getEmails());
+    }
+
+    @Test
+    void leastRecentlyUsedAccount_isEvicted() {
+        Mockito.when(kitApiService.fetchSubscribers(Mockito.isNull()))
+            .thenReturn(SubscriberPage.of(Arrays.asList("a@example.com"), null));
+
+        cache.getSubscriberList().getEmails();
+        KitApiKeyContext.setApiKey("key-b");
+        cache.getSubscriberList().getEmails();
+        KitApiKeyContext.setApiKey("key-c");
+        cache.getSubscriberList().getEmails();
+        // key-a was evicted when key-c was added, so it is loaded again
+        KitApiKeyContext.setApiKey("key-a");
+        cache.getSubscriberList().getEmails();
+
+        Mockito.verify(kitApiService, Mockito.times(4)).fetchSubscribers(Mockito.isNull());
+    }
+}
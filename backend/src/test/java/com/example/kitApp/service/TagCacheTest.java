@@ -0,0 +1,109 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.KitApiTagsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for TagCache
+ */
+@ExtendWith(MockitoExtension.class)
+public class TagCacheTest {
+
+    @Mock
+    private KitApiService kitApiService;
+
+    private MutableClock clock;
+    private TagCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-06-10T12:00:00Z"));
+        cache = new TagCache(kitApiService, Duration.ofSeconds(30), Duration.ofHours(1), 10, clock);
+        KitApiKeyContext.setApiKey("key-a");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+        KitApiKeyContext.clear();
+    }
+
+    @Test
+    void everyPageIsLoaded_andFreshTagsAreServedFromMemory() throws Exception {
+        Mockito.when(kitApiService.fetchTags(null, null)).thenReturn(ResponseEntity.ok(page("1", "c1")));
+        Mockito.when(kitApiService.fetchTags("c1", null)).thenReturn(ResponseEntity.ok(page("2", null)));
+
+        assertEquals(List.of("1", "2"), ids(cache.getTags()));
+        clock.advance(Duration.ofSeconds(10));
+        assertEquals(List.of("1", "2"), ids(cache.getTags()));
+
+        Mockito.verify(kitApiService).fetchTags(null, null);
+        Mockito.verify(kitApiService).fetchTags("c1", null);
+        Mockito.verifyNoMoreInteractions(kitApiService);
+    }
+
+    @Test
+    void staleTags_areServedWhileRevalidatingWithKitsEtag() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag("\"v1\"");
+        Mockito.when(kitApiService.fetchTags(null, null))
+            .thenReturn(ResponseEntity.ok().headers(headers).body(page("1", null)));
+        TagCache.TagList first = cache.getTags();
+
+        // an unchanged list: Kit answers the first conditional request with a 304, the next with a new list
+        CountDownLatch revalidated = new CountDownLatch(1);
+        KitApiTagsResponse changed = page("3", null);
+        AtomicInteger conditionalCalls = new AtomicInteger();
+        Mockito.when(kitApiService.fetchTags(null, "\"v1\"")).thenAnswer(invocation -> {
+            if (conditionalCalls.incrementAndGet() == 1) {
+                revalidated.countDown();
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+            return ResponseEntity.ok(changed);
+        });
+        clock.advance(Duration.ofMinutes(1));
+        assertSame(first, cache.getTags());
+        assertEquals(true, revalidated.await(5, TimeUnit.SECONDS));
+
+        // past max-stale the caller waits for a reload
+        clock.advance(Duration.ofHours(2));
+        TagCache.TagList reloaded = cache.getTags();
+        assertEquals(List.of("3"), ids(reloaded));
+        assertNotEquals(first.getContentHash(), reloaded.getContentHash());
+    }
+
+    private static KitApiTagsResponse page(String tagId, String nextCursor) throws Exception {
+        String pagination = nextCursor == null
+            ? "{\"has_next_page\":false,\"end_cursor\":null}"
+            : "{\"has_next_page\":true,\"end_cursor\":\"" + nextCursor + "\"}";
+        return new ObjectMapper().readValue("{\"tags\":[{\"id\":\"" + tagId + "\",\"name\":\"Tag " + tagId + "\"}],"
+            + "\"pagination\":" + pagination + "}", KitApiTagsResponse.class);
+    }
+
+    private static List<String> ids(TagCache.TagList list) {
+        return list.getTags().stream().map(KitApiTagsResponse.Tag::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.kitApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.kitApp.context.KitApiKeyContext;
+import com.example.kitApp.model.TagOutcome;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Tests for TagJobService
+ */
+@ExtendWith(MockitoExtension.class)
+public class TagJobServiceTest {
+
+    @Mock
+    private KitTaggingService kitTaggingService;
+
+    private TagJobService tagJobService;
+
+    @BeforeEach
+    void setUp() {
+        tagJobService = new TagJobService(kitTaggingService, new TagJournalStore("", 256, Duration.ofDays(7)),
+            1, 2, Duration.ofHours(1));
+        KitApiKeyContext.setApiKey("test-key");
+    }
+
+    @AfterEach
+    void tearDown() {
+        tagJobService.shutdown();
+        KitApiKeyContext.clear();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submittedJob_runsInBackground_andReportsOutcomes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            ObjIntConsumer<TagOutcome> sink = invocation.getArgument(3);
+            sink.accept(new TagOutcome("a@example.com", TagOutcome.Result.TAGGED, 201, "{}"), 0);
+            sink.accept(TagOutcome.failed("b@example.com", "404 Not Found"), 1);
+            return null;
+        }).when(kitTaggingService).tagAll(Mockito.eq("test-key"), Mockito.eq("5"), Mockito.anyIterable(), Mockito.any());
+
+        TagJob job = tagJobService.submit("5", Arrays.asList("a@example.com", "b@example.com"), false);
+        assertEquals(0, job.getProcessed());
+
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        job.subscribe(new TagJob.Listener() {
+            @Override
+            public void onOutcome(TagJob job, TagJob.Entry entry) {
+                events.add(entry.getOutcome().getEmail());
+            }
+
+            @Override
+            public void onFinished(TagJob job) {
+                events.add("finished");
+                finished.countDown();
+            }
+        });
+        release.countDown();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(TagJob.Status.COMPLETED, job.getStatus());
+        assertEquals(1, job.getSuccess());
+        assertEquals(1, job.getFailed());
+        assertEquals(Arrays.asList("a@example.com", "b@example.com", "finished"), events);
+        assertEquals(1, job.getEntriesFrom(1).size());
+        // bodies are dropped unless asked for, failure messages are kept
+        assertEquals(null, job.getEntriesFrom(0).get(0).getOutcome().getBody());
+        assertEquals("404 Not Found", job.getEntriesFrom(0).get(1).getOutcome().getBody());
+        assertEquals(1, job.getEntries(0, 1).size());
+        assertEquals(job, tagJobService.getJob(job.getId()));
+
+        // another account cannot read the job, even with its ID
+        KitApiKeyContext.setApiKey("other-key");
+        assertNull(tagJobService.getJob(job.getId()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamedJob_tagsEmailsWhileTheInputIsStillBeingRead() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            ObjIntConsumer<TagOutcome> sink = invocation.getArgument(3);
+            int index = 0;
+            for (String email : invocation.<Iterable<String>>getArgument(2)) {
+                sink.accept(new TagOutcome(email, TagOutcome.Result.TAGGED, 201, "{}"), index++);
+            }
+            return null;
+        }).when(kitTaggingService).tagAll(Mockito.eq("test-key"), Mockito.eq("5"), Mockito.anyIterable(), Mockito.any());
+
+        // the second row only arrives once the first has been tagged
+        CountDownLatch secondRow = new CountDownLatch(1);
+        Iterable<String> upload = () -> new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == 1) {
+                    try {
+                        secondRow.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return next < 2;
+            }
+
+            @Override
+            public String next() {
+                return next++ == 0 ? "a@example.com" : "b@example.com";
+            }
+        };
+
+        TagJob job = tagJobService.submitStream("5", upload, false, null);
+        for (int i = 0; i < 50 && job.getProcessed() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, job.getProcessed());
+        assertFalse(job.getInputRead().isDone());
+
+        secondRow.countDown();
+        assertEquals(2, job.getInputRead().get(5, TimeUnit.SECONDS));
+        assertEquals(TagJob.Status.COMPLETED, awaitFinished(job).getStatus());
+        assertEquals(2, job.getTotal());
+        assertEquals(2, job.getSuccess());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resumedJob_skipsOnlyEmailsTheInterruptedJobTagged(@TempDir Path journalDir) throws Exception {
+        tagJobService.shutdown();
+        tagJobService = new TagJobService(kitTaggingService, new TagJournalStore(journalDir.toString(), 1, Duration.ofDays(7)),
+            1, 2, Duration.ofHours(1));
+        List<List<String>> sentToKit = new CopyOnWriteArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            List<String> emails = new ArrayList<>();
+            invocation.<Iterable<String>>getArgument(2).forEach(emails::add);
+            sentToKit.add(emails);
+            ObjIntConsumer<TagOutcome> sink = invocation.getArgument(3);
+            for (int i = 0; i < emails.size(); i++) {
+                if (sentToKit.size() == 1 && emails.get(i).startsWith("c")) {
+                    // the first job is cut off before reaching c
+                    throw new IllegalStateException("worker lost");
+                }
+                sink.accept(emails.get(i).startsWith("b")
+                    ? TagOutcome.failed(emails.get(i), "500 Internal Server Error")
+                    : new TagOutcome(emails.get(i), TagOutcome.Result.TAGGED, 201, "{}"), i);
+            }
+            return null;
+        }).when(kitTaggingService).tagAll(Mockito.eq("test-key"), Mockito.eq("5"), Mockito.anyIterable(), Mockito.any());
+
+        List<String> emails = Arrays.asList("a@example.com", "b@example.com", "c@example.com");
+        TagJob interrupted = awaitFinished(tagJobService.submit("5", emails, false));
+        assertEquals(TagJob.Status.FAILED, interrupted.getStatus());
+        assertEquals(1, interrupted.getSuccess());
+
+        // a restarted service lists the job again from its journal, and it can be resumed from there
+        TagJobService restarted = new TagJobService(kitTaggingService, new TagJournalStore(journalDir.toString(), 1, Duration.ofDays(7)),
+            1, 2, Duration.ofHours(1));
+        try {
+            TagJob restored = restarted.getJob(interrupted.getId());
+            assertEquals(TagJob.Status.FAILED, restored.getStatus());
+            assertEquals(2, restored.getProcessed());
+
+            TagJob resumed = awaitFinished(restarted.submit("5",
+                Arrays.asList("A@example.com ", "b@example.com", "c@example.com"), false, interrupted.getId()));
+            assertEquals(List.of("b@example.com", "c@example.com"), sentToKit.get(1));
+            assertEquals(1, resumed.getSkipped());
+            assertEquals(1, resumed.getAlreadyTagged());
+            assertEquals(1, resumed.getSuccess());
+            assertEquals(1, resumed.getEntriesFrom(0).stream()
+                .filter(entry -> entry.getOutcome().getEmail().equals("b@example.com"))
+                .findFirst().orElseThrow().getIndex());
+
+            // a plain resubmission trusts no earlier job, and completed jobs cannot be resumed
+            awaitFinished(restarted.submit("5", emails, false));
+            assertEquals(emails, sentToKit.get(2));
+            assertThrows(IllegalArgumentException.class, () -> restarted.submit("5", emails, false, resumed.getId()));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void interruptedJob_staysResumableAfterAnOutageLongerThanTheRetention(@TempDir Path journalDir) throws Exception {
+        tagJobService.shutdown();
+        tagJobService = new TagJobService(kitTaggingService, new TagJournalStore(journalDir.toString(), 1, Duration.ofDays(7)),
+            1, 2, Duration.ofHours(1));
+        Mockito.doAnswer(invocation -> {
+            Iterator<String> emails = invocation.<Iterable<String>>getArgument(2).iterator();
+            ObjIntConsumer<TagOutcome> sink = invocation.getArgument(3);
+            String email = emails.next();
+            sink.accept(new TagOutcome(email, TagOutcome.Result.TAGGED, 201, "{}"), 0);
+            if (emails.hasNext()) {
+                throw new IllegalStateException("worker lost");
+            }
+            return null;
+        }).when(kitTaggingService).tagAll(Mockito.eq("test-key"), Mockito.eq("5"), Mockito.anyIterable(), Mockito.any());
+
+        TagJob interrupted = awaitFinished(tagJobService.submit("5", Arrays.asList("a@example.com", "b@example.com"), false));
+        TagJob completed = awaitFinished(tagJobService.submit("5", Arrays.asList("c@example.com"), false));
+        assertEquals(TagJob.Status.FAILED, interrupted.getStatus());
+        assertEquals(TagJob.Status.COMPLETED, completed.getStatus());
+
+        // the backend comes back two hours later, past the one hour retention but well within the journals' week
+        FileTime twoHoursAgo = FileTime.from(Instant.now().minus(Duration.ofHours(2)));
+        for (TagJob job : List.of(interrupted, completed)) {
+            Files.setLastModifiedTime(journalDir.resolve(job.getId() + ".journal"), twoHoursAgo);
+        }
+        TagJobService restarted = new TagJobService(kitTaggingService, new TagJournalStore(journalDir.toString(), 1, Duration.ofDays(7)),
+            1, 2, Duration.ofHours(1));
+        try {
+            assertNull(restarted.getJob(completed.getId()));
+            assertEquals(TagJob.Status.FAILED, restarted.getJob(interrupted.getId()).getStatus());
+
+            List<String> sentToKit = new CopyOnWriteArrayList<>();
+            Mockito.doAnswer(invocation -> {
+                invocation.<Iterable<String>>getArgument(2).forEach(sentToKit::add);
+                return null;
+            }).when(kitTaggingService).tagAll(Mockito.eq("test-key"), Mockito.eq("5"), Mockito.anyIterable(), Mockito.any());
+            TagJob resumed = awaitFinished(restarted.submit("5", Arrays.asList("a@example.com", "b@example.com"), false,
+                interrupted.getId()));
+            assertEquals(1, resumed.getSkipped());
+            assertEquals(List.of("b@example.com"), sentToKit);
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    private static TagJob awaitFinished(TagJob job) throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(1);
+        job.subscribe(new TagJob.Listener() {
+            @Override
+            public void onOutcome(TagJob job, TagJob.Entry entry) { }
+
+            @Override
+            public void onFinished(TagJob job) {
+                finished.countDown();
+            }
+        });
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        return job;
+    }
+}
@@ -7,6 +7,7 @@ function SubscriberList() {
   const [subscribers, setSubscribers] = useState([]);
   const [error, setError] = useState('');
   const [isLoading, setIsLoading] = useState(false);
+  const [isExporting, setIsExporting] = useState(false);
 
   const fetchSubscribers = async () => {
     setIsLoading(true);
@@ -26,8 +27,33 @@ function SubscriberList() {
     }
   };
 
+  const exportSubscribers = async () => {
+    setIsExporting(true);
+    try {
+      // asking for the state column exports subscribers in every state, not only active ones
+      const response = await axios.post('/api/subscribers/export', null, {
+        params: { format: 'csv', columns: 'email,id,state,created_at' },
+        headers: {
+          'Kit-Api-Key': apiKey,
+        },
+        responseType: 'blob',
+      });
+      const url = URL.createObjectURL(response.data);
+      const link = document.createElement('a');
+      link.href = url;
+      link.download = 'subscribers.csv.gz';
+      link.click();
+      URL.revokeObjectURL(url);
+      setError('');
+    } catch (err) {
+      setError('Failed to export subscribers: ' + err.message);
+    } finally {
+      setIsExporting(false);
+    }
+  };
+
   { /* Render the component 
-    * This includes an input for the API key, a button to fetch subscribers,
+    * This includes an input for the API key, buttons to fetch and export subscribers,
     * and a table to display the list of subscribers.
     */ }
   return (
@@ -48,6 +74,13 @@ function SubscriberList() {
         >
           {isLoading ? 'Loading...' : 'Fetch Subscribers'}
         </button>
+        <button
+          onClick={exportSubscribers}
+          disabled={isExporting}
+          style={{ padding: '8px 16px', marginLeft: '10px' }}
+        >
+          {isExporting ? 'Exporting...' : 'Export CSV'}
+        </button>
       </div>
       
       {error && <p style={{ color: 'red' }}>{error}</p>}
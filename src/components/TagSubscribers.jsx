@@ -23,11 +23,15 @@ function TagSubscribers() {
 
   { /* Fetch tags when the component mounts or apiKey changes 
     * Currently, the apiKey won't be set until the user inputs it, so this will only run after the first input.
+    * Waits for typing to pause rather than fetching on every keystroke; the browser revalidates the
+    * response with its ETag, so an unchanged tag list comes back as an empty 304.
     */ }
   useEffect(() => {
-    if (apiKey) {
-      fetchTags();
+    if (!apiKey) {
+      return;
     }
+    const timer = setTimeout(fetchTags, 400);
+    return () => clearTimeout(timer);
   }, [apiKey]);
 
   const fetchTags = async () => {
@@ -51,6 +55,31 @@ function TagSubscribers() {
     setError('');
   };
 
+  { /* Polls a tag job until it finishes, showing the counts as they come in. Only failed emails are listed,
+    * so a large upload doesn't pull (and render) a row for every address */ }
+  const followJob = async (jobId) => {
+    let offset = 0;
+    let details = [];
+    for (;;) {
+      const response = await axios.get(`/api/tag-jobs/${jobId}`, {
+        params: { from: offset, details: 'failures' },
+        headers: { 'Kit-Api-Key': apiKey }
+      });
+      const { status, message, details: counts, emailDetails, nextOffset, processed, total } = response.data;
+      details = details.concat(emailDetails);
+      offset = nextOffset;
+      setSummaryData({ message: message || `Processing... ${processed} of ${total}`, details: counts });
+      setEmailDetailsData([...details].sort((a, b) => a.index - b.index));
+      const finished = status === 'COMPLETED' || status === 'FAILED';
+      if (finished && offset >= processed) {
+        return;
+      }
+      if (!finished) {
+        await new Promise(resolve => setTimeout(resolve, 1000));
+      }
+    }
+  };
+
   const handleSubmit = async () => {
     if (!file) {
       setError('Please select a file');
@@ -67,28 +96,17 @@ function TagSubscribers() {
     setEmailDetailsData([]);
 
     try {
-      const reader = new FileReader();
-      reader.onload = async (e) => {
-        const text = e.target.result;
-        const emails = text.split('\n')
-          .map(line => line.trim())
-          .filter(line => line && line.includes('@'));
-
-        const response = await axios.post('/api/tag-subscribers', 
-          { emails, tagId: selectedTag },
-          {
-            headers: {
-              'Kit-Api-Key': apiKey,
-              'Content-Type': 'application/json',
-            },
-          }
-        );
-
-        const { message, details, emailDetails } = response.data;
-        setSummaryData({ message, details });
-        setEmailDetailsData(emailDetails || []);
-      };
-      reader.readAsText(file);
+      { /* The file is sent as-is; a background job parses, normalises and deduplicates the rows and
+        * starts tagging them while the rest of the file is still uploading. The response (with the job ID)
+        * comes once the whole file has been read; the tagging is then followed by polling the job */ }
+      const response = await axios.post('/api/tag-jobs/csv', file, {
+        params: { tagId: selectedTag },
+        headers: {
+          'Kit-Api-Key': apiKey,
+          'Content-Type': 'text/csv',
+        },
+      });
+      await followJob(response.data.jobId);
     } catch (err) {
       setError('Failed to process CSV: ' + err.message);
     } finally {
@@ -206,9 +224,11 @@ function TagSubscribers() {
                               <li style={{ margin: '5px 0' }}>
                                 Status: {emailDetail.status}
                               </li>
-                              <li style={{ margin: '5px 0' }}>
-                                Result: {emailDetail.result}
-                              </li>
+                              {emailDetail.result && (
+                                <li style={{ margin: '5px 0' }}>
+                                  Result: {emailDetail.result}
+                                </li>
+                              )}
                             </ul>
                           </div>
                         ))}